@@ -2,8 +2,10 @@ package fi.dy.masa.malilib;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import fi.dy.masa.malilib.config.ConfigFileWriter;
 import fi.dy.masa.malilib.event.InitializationHandler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 
 public class MaLiLib implements ModInitializer
 {
@@ -13,5 +15,6 @@ public class MaLiLib implements ModInitializer
     public void onInitialize()
     {
         InitializationHandler.getInstance().registerInitializationHandler(new MaLiLibInitHandler());
+        ClientLifecycleEvents.CLIENT_STOPPING.register(mc -> ConfigFileWriter.getInstance().flush());
     }
 }
@@ -2,15 +2,16 @@ package fi.dy.masa.malilib;
 
 import java.io.File;
 import com.google.common.collect.ImmutableList;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import fi.dy.masa.malilib.config.ConfigFileReader;
+import fi.dy.masa.malilib.config.ConfigFileWriter;
 import fi.dy.masa.malilib.config.ConfigUtils;
 import fi.dy.masa.malilib.config.IConfigHandler;
 import fi.dy.masa.malilib.config.IConfigValue;
 import fi.dy.masa.malilib.config.options.ConfigBoolean;
 import fi.dy.masa.malilib.config.options.ConfigHotkey;
+import fi.dy.masa.malilib.config.options.ConfigInteger;
 import fi.dy.masa.malilib.util.FileUtils;
-import fi.dy.masa.malilib.util.JsonUtils;
 
 public class MaLiLibConfigs implements IConfigHandler
 {
@@ -18,14 +19,28 @@ public class MaLiLibConfigs implements IConfigHandler
 
     public static class Generic
     {
-        public static final ConfigHotkey    IGNORED_KEYS            = new ConfigHotkey("ignoredKeys", "", "Any keys set here will be completely ignored");
-        public static final ConfigHotkey    OPEN_GUI_CONFIGS        = new ConfigHotkey("openGuiConfigs", "A,C", "Open the in-game malilib config GUI");
-        public static final ConfigBoolean   REALMS_COMMON_CONFIG    = new ConfigBoolean("realmsCommonConfig", true, "Whether or not to use a common config file name for all realms servers.\nIf this is disabled, then the server IP and port are used in the generated config file names.\nHowever, apparently the Realms server addresses change regularly, so the config names would change\nall the time and thus the configs wouldn't save properly.\nSo basically leave this enabled if you only play on one Realms server.\nIf you play on multiple Realms... then the configs will get mixed up regardless.\nUnless you play on the different servers on different Minecraft instances\nto keep the configs separated by the Minecraft instance.");
+        public static final ConfigBoolean   CONFIG_FILE_HOT_RELOAD         = new ConfigBoolean("configFileHotReload", false, "If enabled, then the config directory is watched for changes,\nand when a config file is modified outside of the game,\nthe changed values are applied right away.\nOnly the config files of the mods whose config handler\nprovides a ConfigFileReader are watched.");
+        public static final ConfigBoolean   CONFIG_SNAPSHOT_CACHE          = new ConfigBoolean("configSnapshotCache", false, "If enabled, then a compact binary copy of the config values\nis saved next to the JSON config files of the mods that support it,\nand it's used instead of parsing the JSON file, as long as the\nJSON file hasn't been modified since. The JSON files are still\nthe actual config files, and can be edited normally.");
+        public static final ConfigHotkey    DUMP_HANDLER_TIMINGS           = new ConfigHotkey("dumpHandlerTimings", "", "Dumps the timing statistics of all the renderers,\ntick handlers and input handlers registered to malilib\nto a file in the 'malilib_dumps' directory.\nRequires 'handlerTimingStats' to be enabled.");
+        public static final ConfigBoolean   HANDLER_TIMING_STATS           = new ConfigBoolean("handlerTimingStats", false, "If enabled, then timing statistics are collected for all the renderers,\ntick handlers and input handlers registered to malilib.\nThe statistics can be dumped to a file via 'dumpHandlerTimings'.");
+        public static final ConfigHotkey    IGNORED_KEYS                   = new ConfigHotkey("ignoredKeys", "", "Any keys set here will be completely ignored");
+        public static final ConfigHotkey    OPEN_GUI_CONFIGS               = new ConfigHotkey("openGuiConfigs", "A,C", "Open the in-game malilib config GUI");
+        public static final ConfigInteger   PACKET_SEND_BYTES_PER_TICK     = new ConfigInteger("packetSendBytesPerTick", 65536, 0, 16777216, "The maximum number of bytes per game tick to send\nto the server via the plugin channel send queue.\nLarge uploads are spread over multiple ticks,\nso that they don't starve the other packets.\n0 = unlimited");
+        public static final ConfigInteger   PAYLOAD_DECODE_QUEUE_DEPTH     = new ConfigInteger("payloadDecodeQueueDepth", 32, 1, 4096, "The maximum number of received plugin channel payloads per channel\nthat can be waiting to be decoded or applied.\nWhen the queue is full, reading from the connection\nis paused until the queue has drained.");
+        public static final ConfigBoolean   REALMS_COMMON_CONFIG           = new ConfigBoolean("realmsCommonConfig", true, "Whether or not to use a common config file name for all realms servers.\nIf this is disabled, then the server IP and port are used in the generated config file names.\nHowever, apparently the Realms server addresses change regularly, so the config names would change\nall the time and thus the configs wouldn't save properly.\nSo basically leave this enabled if you only play on one Realms server.\nIf you play on multiple Realms... then the configs will get mixed up regardless.\nUnless you play on the different servers on different Minecraft instances\nto keep the configs separated by the Minecraft instance.");
+        public static final ConfigInteger   SLOW_HANDLER_WARNING_THRESHOLD = new ConfigInteger("slowHandlerWarningThreshold", 20000, 0, 1000000, "If a single call to a renderer, tick handler or input handler\nregistered to malilib (or loading the configs of a mod)\ntakes longer than this many microseconds,\nthen a warning is printed to the game log (at most once\nper 30 seconds per handler).\n0 = disabled");
 
         public static final ImmutableList<IConfigValue> OPTIONS = ImmutableList.of(
+                CONFIG_FILE_HOT_RELOAD,
+                CONFIG_SNAPSHOT_CACHE,
+                DUMP_HANDLER_TIMINGS,
+                HANDLER_TIMING_STATS,
                 IGNORED_KEYS,
                 OPEN_GUI_CONFIGS,
-                REALMS_COMMON_CONFIG
+                PACKET_SEND_BYTES_PER_TICK,
+                PAYLOAD_DECODE_QUEUE_DEPTH,
+                REALMS_COMMON_CONFIG,
+                SLOW_HANDLER_WARNING_THRESHOLD
         );
     }
 
@@ -35,44 +50,41 @@ public class MaLiLibConfigs implements IConfigHandler
         public static final ConfigBoolean KEYBIND_DEBUG             = new ConfigBoolean("keybindDebugging", false, "When enabled, key presses and held keys are\nprinted to the game console (and the action bar, if enabled)");
         public static final ConfigBoolean KEYBIND_DEBUG_ACTIONBAR   = new ConfigBoolean("keybindDebuggingIngame", true, "If enabled, then the messages from 'keybindDebugging'\nare also printed to the in-game action bar");
         public static final ConfigBoolean MOUSE_SCROLL_DEBUG        = new ConfigBoolean("mouseScrollDebug", false, "If enabled, some debug values from mouse scrolling\nare printed to the game console/log");
+        public static final ConfigBoolean NETWORK_METRICS_OVERLAY   = new ConfigBoolean("networkMetricsOverlay", false, "If enabled, the traffic and timing statistics\nof the plugin channels handled via malilib\nare shown on the HUD");
 
         public static final ImmutableList<IConfigValue> OPTIONS = ImmutableList.of(
                 INPUT_CANCELLATION_DEBUG,
                 KEYBIND_DEBUG,
                 KEYBIND_DEBUG_ACTIONBAR,
-                MOUSE_SCROLL_DEBUG
+                MOUSE_SCROLL_DEBUG,
+                NETWORK_METRICS_OVERLAY
         );
     }
 
-    public static void loadFromFile()
-    {
-        File configFile = new File(FileUtils.getConfigDirectory(), CONFIG_FILE_NAME);
+    private static final ConfigFileReader READER = new ConfigFileReader().addConfigs("Generic", Generic.OPTIONS);
 
-        if (configFile.exists() && configFile.isFile() && configFile.canRead())
-        {
-            JsonElement element = JsonUtils.parseJsonFile(configFile);
-
-            if (element != null && element.isJsonObject())
-            {
-                JsonObject root = element.getAsJsonObject();
+    private static File getConfigFileStatic()
+    {
+        return new File(FileUtils.getConfigDirectory(), CONFIG_FILE_NAME);
+    }
 
-                ConfigUtils.readConfigBase(root, "Generic", Generic.OPTIONS);
-            }
-        }
+    public static void loadFromFile()
+    {
+        READER.read(getConfigFileStatic());
     }
 
     public static void saveToFile()
     {
-        File dir = FileUtils.getConfigDirectory();
+        ConfigFileWriter.getInstance().queueWrite(getConfigFileStatic(), createConfigData());
+    }
 
-        if ((dir.exists() && dir.isDirectory()) || dir.mkdirs())
-        {
-            JsonObject root = new JsonObject();
+    private static JsonObject createConfigData()
+    {
+        JsonObject root = new JsonObject();
 
-            ConfigUtils.writeConfigBase(root, "Generic", Generic.OPTIONS);
+        ConfigUtils.writeConfigBase(root, "Generic", Generic.OPTIONS);
 
-            JsonUtils.writeJsonToFile(root, new File(dir, CONFIG_FILE_NAME));
-        }
+        return root;
     }
 
     @Override
@@ -93,4 +105,28 @@ public class MaLiLibConfigs implements IConfigHandler
     {
         saveToFile();
     }
+
+    @Override
+    public File getConfigFile()
+    {
+        return getConfigFileStatic();
+    }
+
+    @Override
+    public ConfigFileReader getConfigReader()
+    {
+        return READER;
+    }
+
+    @Override
+    public boolean supportsDirtyTracking()
+    {
+        return true;
+    }
+
+    @Override
+    public JsonObject createSaveData()
+    {
+        return createConfigData();
+    }
 }
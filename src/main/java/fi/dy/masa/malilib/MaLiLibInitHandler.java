@@ -1,12 +1,34 @@
 package fi.dy.masa.malilib;
 
+import java.io.File;
+import java.util.List;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Identifier;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import fi.dy.masa.malilib.config.ConfigFileWatcher;
 import fi.dy.masa.malilib.config.ConfigManager;
+import fi.dy.masa.malilib.data.DataDump;
+import fi.dy.masa.malilib.event.HandlerTimings;
 import fi.dy.masa.malilib.event.InputEventHandler;
+import fi.dy.masa.malilib.event.RenderEventHandler;
+import fi.dy.masa.malilib.event.TickHandler;
 import fi.dy.masa.malilib.gui.GuiBase;
+import fi.dy.masa.malilib.gui.Message.MessageType;
 import fi.dy.masa.malilib.hotkeys.IHotkeyCallback;
 import fi.dy.masa.malilib.hotkeys.IKeybind;
 import fi.dy.masa.malilib.hotkeys.KeyAction;
 import fi.dy.masa.malilib.interfaces.IInitializationHandler;
+import fi.dy.masa.malilib.network.NetworkMetricsRenderer;
+import fi.dy.masa.malilib.network.PacketSendQueue;
+import fi.dy.masa.malilib.network.PacketSplitter;
+import fi.dy.masa.malilib.network.PayloadDecodeQueue;
+import fi.dy.masa.malilib.util.FileUtils;
+import fi.dy.masa.malilib.util.InfoUtils;
 
 public class MaLiLibInitHandler implements IInitializationHandler
 {
@@ -17,6 +39,20 @@ public class MaLiLibInitHandler implements IInitializationHandler
         InputEventHandler.getKeybindManager().registerKeybindProvider(MaLiLibInputHandler.getInstance());
 
         MaLiLibConfigs.Generic.OPEN_GUI_CONFIGS.getKeybind().setCallback(new CallbackOpenConfigGui());
+        MaLiLibConfigs.Generic.DUMP_HANDLER_TIMINGS.getKeybind().setCallback(new CallbackDumpHandlerTimings());
+
+        TickHandler.getInstance().registerClientTickHandler(ConfigFileWatcher.getInstance());
+        TickHandler.getInstance().registerClientTickHandler(PacketSendQueue.getInstance());
+        RenderEventHandler.getInstance().registerGameOverlayRenderer(NetworkMetricsRenderer.getInstance());
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new OverlayRenderCacheReloadListener());
+
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, mc) -> {
+            PacketSplitter.getClientReadingSessions().onDisconnect(handler);
+            PacketSendQueue.getInstance().clear();
+            PayloadDecodeQueue.getInstance().clear();
+            RenderSystem.recordRenderCall(() -> ((RenderEventHandler) RenderEventHandler.getInstance()).clearOverlayRenderCache());
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> PacketSplitter.getServerReadingSessions().onDisconnect(handler));
     }
 
     private static class CallbackOpenConfigGui implements IHotkeyCallback
@@ -28,4 +64,44 @@ public class MaLiLibInitHandler implements IInitializationHandler
             return true;
         }
     }
+
+    private static class CallbackDumpHandlerTimings implements IHotkeyCallback
+    {
+        @Override
+        public boolean onKeyAction(KeyAction action, IKeybind key)
+        {
+            File dir = new File(FileUtils.getMinecraftDirectory(), "malilib_dumps");
+            File file = null;
+
+            for (DataDump.Format format : DataDump.Format.values())
+            {
+                List<String> lines = HandlerTimings.getInstance().createDataDump(format).getLines();
+                file = DataDump.dumpDataToFile(dir, "handler_timings", lines, format);
+            }
+
+            if (file != null)
+            {
+                InfoUtils.showGuiOrInGameMessage(MessageType.SUCCESS, "malilib.message.handler_timings_dumped", dir.getAbsolutePath());
+            }
+
+            return true;
+        }
+    }
+
+    private static class OverlayRenderCacheReloadListener implements SimpleSynchronousResourceReloadListener
+    {
+        private static final Identifier ID = new Identifier(MaLiLibReference.MOD_ID, "overlay_render_cache");
+
+        @Override
+        public Identifier getFabricId()
+        {
+            return ID;
+        }
+
+        @Override
+        public void reload(ResourceManager manager)
+        {
+            ((RenderEventHandler) RenderEventHandler.getInstance()).clearOverlayRenderCache();
+        }
+    }
 }
@@ -24,12 +24,13 @@ public class MaLiLibInputHandler implements IKeybindProvider
     public void addKeysToMap(IKeybindManager manager)
     {
         manager.addKeybindToMap(MaLiLibConfigs.Generic.OPEN_GUI_CONFIGS.getKeybind());
+        manager.addKeybindToMap(MaLiLibConfigs.Generic.DUMP_HANDLER_TIMINGS.getKeybind());
     }
 
     @Override
     public void addHotkeys(IKeybindManager manager)
     {
-        List<? extends IHotkey> hotkeys = ImmutableList.of( MaLiLibConfigs.Generic.OPEN_GUI_CONFIGS );
+        List<? extends IHotkey> hotkeys = ImmutableList.of( MaLiLibConfigs.Generic.OPEN_GUI_CONFIGS, MaLiLibConfigs.Generic.DUMP_HANDLER_TIMINGS );
         manager.addHotkeysForCategory(MaLiLibReference.MOD_NAME, "malilib.hotkeys.category.generic_hotkeys", hotkeys);
     }
 }
@@ -0,0 +1,39 @@
+package fi.dy.masa.malilib.config;
+
+/**
+ * Groups config value changes together. While a batch is open on the current thread,
+ * the {@link fi.dy.masa.malilib.interfaces.IValueChangeCallback}s of the changed configs
+ * and the {@link IConfigChangeListener}s are not called right away. Instead, when the outermost
+ * batch is closed, each changed config's callback is called once, and each listener
+ * receives one coalesced list of the changes of its mod.<br>
+ * Use with try-with-resources:
+ * <pre>
+ * try (ConfigChangeBatch batch = ConfigManager.getInstance().beginChangeBatch())
+ * {
+ *     // change config values
+ * }
+ * </pre>
+ */
+public class ConfigChangeBatch implements AutoCloseable
+{
+    private final ConfigManager manager;
+    private boolean closed;
+
+    ConfigChangeBatch(ConfigManager manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Commits the batch, if this is the outermost open batch
+     */
+    @Override
+    public void close()
+    {
+        if (this.closed == false)
+        {
+            this.closed = true;
+            this.manager.endChangeBatch();
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.hotkeys.IHotkey;
+import fi.dy.masa.malilib.hotkeys.IKeybind;
+import fi.dy.masa.malilib.util.JsonUtils;
+
+/**
+ * Reads a config file in a single pass over the JSON token stream, without building the full
+ * JSON tree of the file. The category and option names are resolved via a prebuilt index,
+ * and only the values of the known options are parsed.<br>
+ * This reads the same file format as the {@link ConfigUtils} read methods.
+ * The options should be added once when creating the reader, after which the reader
+ * can be used from any thread. Reading is split into {@link #parse(File)},
+ * which can be done on a background thread, and {@link ParsedValues#apply()},
+ * which sets the values to the options and must be done on the client thread.
+ */
+public class ConfigFileReader
+{
+    private final Map<String, Map<String, Integer>> categories = new HashMap<>();
+    private final List<List<IValueBinding>> bindings = new ArrayList<>();
+    private final List<String> optionKeys = new ArrayList<>();
+    private final List<IConfigBase> configs = new ArrayList<>();
+
+    /**
+     * Adds options that are read like {@link ConfigUtils#readConfigBase(JsonObject, String, List)}
+     */
+    public ConfigFileReader addConfigs(String category, List<? extends IConfigBase> options)
+    {
+        for (IConfigBase option : options)
+        {
+            this.addBinding(category, option.getName(), new ConfigValueBinding(option));
+        }
+
+        this.configs.addAll(options);
+
+        return this;
+    }
+
+    /**
+     * Adds hotkeys that are read like {@link ConfigUtils#readHotkeys(JsonObject, String, List)}
+     */
+    public ConfigFileReader addHotkeys(String category, List<? extends IHotkey> hotkeys)
+    {
+        for (IHotkey hotkey : hotkeys)
+        {
+            this.addBinding(category, hotkey.getName(), new HotkeyBinding(hotkey));
+        }
+
+        this.configs.addAll(hotkeys);
+
+        return this;
+    }
+
+    /**
+     * Adds options that are read like {@link ConfigUtils#readHotkeyToggleOptions(JsonObject, String, String, List)}
+     */
+    public ConfigFileReader addHotkeyToggleOptions(String keyHotkey, String keyBoolean, List<? extends IHotkeyTogglable> options)
+    {
+        this.addHotkeys(keyHotkey, options);
+        this.addConfigs(keyBoolean, options);
+
+        return this;
+    }
+
+    private void addBinding(String category, String name, IValueBinding binding)
+    {
+        int index = this.categories.computeIfAbsent(category, key -> new HashMap<>()).computeIfAbsent(name, key -> {
+            this.bindings.add(new ArrayList<>());
+            this.optionKeys.add(category + "/" + name);
+            return this.bindings.size() - 1;
+        });
+
+        this.bindings.get(index).add(binding);
+    }
+
+    /**
+     * Returns a hash of the option names and categories, which identifies the
+     * option indices used in the config snapshots
+     */
+    long getSchemaHash()
+    {
+        long hash = 1125899906842597L;
+
+        for (String key : this.optionKeys)
+        {
+            hash = 31 * hash + key.hashCode();
+        }
+
+        return 31 * hash + this.optionKeys.size();
+    }
+
+    int getOptionCount()
+    {
+        return this.bindings.size();
+    }
+
+    /**
+     * Reads the given file and applies the values to the options right away
+     * @return true if the file was read successfully
+     */
+    public boolean read(File file)
+    {
+        ParsedValues values = this.parse(file);
+        values.apply();
+        return values.isValid();
+    }
+
+    /**
+     * Reads the option values from the given file, or from the data still waiting to be written
+     * to the file by the {@link ConfigFileWriter}, but doesn't apply them yet.
+     * If {@link MaLiLibConfigs.Generic#CONFIG_SNAPSHOT_CACHE} is enabled, then the values are read from
+     * the {@link ConfigSnapshot} of the file if it's up to date, and otherwise the snapshot is regenerated.
+     * This can be called from any thread.
+     */
+    public ParsedValues parse(File file)
+    {
+        return this.parse(file, true);
+    }
+
+    /**
+     * Reads the option values like {@link #parse(File)}, but optionally always parses the JSON file.
+     * This is needed for externally modified files, where the size and the modification time
+     * of the file may not be enough to tell that the snapshot is out of date.
+     * The snapshot is still regenerated after parsing the file, if the snapshot cache is enabled.
+     * @param allowSnapshot if false, then the values are never read from the snapshot
+     */
+    public ParsedValues parse(File file, boolean allowSnapshot)
+    {
+        ParsedValues values = new ParsedValues();
+        JsonObject pending = ConfigFileWriter.getInstance().getPendingData(file);
+
+        if (pending != null)
+        {
+            this.bindTree(pending, values);
+            return values;
+        }
+
+        if (file.exists() && file.isFile() && file.canRead())
+        {
+            boolean useSnapshot = MaLiLibConfigs.Generic.CONFIG_SNAPSHOT_CACHE.getBooleanValue();
+
+            long length = file.length();
+            long lastModified = file.lastModified();
+
+            if (useSnapshot && allowSnapshot && ConfigSnapshot.read(file, this, values))
+            {
+                return values;
+            }
+
+            try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))))
+            {
+                reader.setLenient(true);
+                this.bindStream(reader, values);
+            }
+            catch (Exception e)
+            {
+                MaLiLib.logger.error("Failed to parse the JSON file '{}'", file.getAbsolutePath(), e);
+                values.invalidate();
+                return values;
+            }
+
+            if (useSnapshot)
+            {
+                ConfigSnapshot.write(file, length, lastModified, this, values);
+            }
+        }
+        else
+        {
+            values.invalidate();
+        }
+
+        return values;
+    }
+
+    private void bindStream(JsonReader reader, ParsedValues values) throws Exception
+    {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            return;
+        }
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            Map<String, Integer> options = this.categories.get(reader.nextName());
+
+            if (options == null || reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+
+            while (reader.hasNext())
+            {
+                Integer index = options.get(reader.nextName());
+
+                if (index != null)
+                {
+                    // Only the value of a known option is parsed into a (small) element
+                    values.add(index, JsonParser.parseReader(reader));
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        }
+
+        reader.endObject();
+    }
+
+    private void bindTree(JsonObject root, ParsedValues values)
+    {
+        for (Map.Entry<String, Map<String, Integer>> category : this.categories.entrySet())
+        {
+            JsonObject obj = JsonUtils.getNestedObject(root, category.getKey(), false);
+
+            if (obj != null)
+            {
+                for (Map.Entry<String, JsonElement> entry : obj.entrySet())
+                {
+                    Integer index = category.getValue().get(entry.getKey());
+
+                    if (index != null)
+                    {
+                        values.add(index, entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    public class ParsedValues
+    {
+        private final IntArrayList indices = new IntArrayList();
+        private final List<JsonElement> elements = new ArrayList<>();
+        private boolean valid = true;
+
+        void add(int index, JsonElement element)
+        {
+            this.indices.add(index);
+            this.elements.add(element);
+        }
+
+        void clear()
+        {
+            this.indices.clear();
+            this.elements.clear();
+        }
+
+        void invalidate()
+        {
+            this.clear();
+            this.valid = false;
+        }
+
+        int size()
+        {
+            return this.elements.size();
+        }
+
+        int getIndex(int i)
+        {
+            return this.indices.getInt(i);
+        }
+
+        JsonElement getElement(int i)
+        {
+            return this.elements.get(i);
+        }
+
+        /**
+         * Returns true if the file existed and was parsed successfully
+         */
+        public boolean isValid()
+        {
+            return this.valid;
+        }
+
+        /**
+         * Sets the parsed values to the options. Must be called on the client thread.
+         */
+        public void apply()
+        {
+            ((ConfigManager) ConfigManager.getInstance()).trackConfigs(ConfigFileReader.this.configs);
+
+            for (int i = 0; i < this.elements.size(); ++i)
+            {
+                JsonElement element = this.elements.get(i);
+
+                for (IValueBinding binding : ConfigFileReader.this.bindings.get(this.indices.getInt(i)))
+                {
+                    binding.apply(element);
+                }
+            }
+        }
+
+        /**
+         * Sets only the parsed values that differ from the current values of the options,
+         * and then calls {@link IConfigNotifiable#onValueChanged()} for the changed options.
+         * Must be called on the client thread.
+         * @return the changes that were applied
+         */
+        public ChangeSet applyChanged()
+        {
+            ChangeSet changes = new ChangeSet();
+            ConfigManager manager = (ConfigManager) ConfigManager.getInstance();
+
+            manager.trackConfigs(ConfigFileReader.this.configs);
+
+            // The callbacks get called when the batch is closed, after all the values have been set
+            try (ConfigChangeBatch batch = manager.beginChangeBatch())
+            {
+                for (int i = 0; i < this.elements.size(); ++i)
+                {
+                    JsonElement element = this.elements.get(i);
+
+                    for (IValueBinding binding : ConfigFileReader.this.bindings.get(this.indices.getInt(i)))
+                    {
+                        if (binding.applyIfChanged(element))
+                        {
+                            binding.addTo(changes);
+                        }
+                    }
+                }
+
+                for (IConfigBase config : changes.changedValues)
+                {
+                    if (config instanceof IConfigNotifiable<?> notifiable)
+                    {
+                        notifiable.onValueChanged();
+                    }
+                }
+            }
+
+            return changes;
+        }
+    }
+
+    public static class ChangeSet
+    {
+        private final List<IConfigBase> changedValues = new ArrayList<>();
+        private final List<IHotkey> changedHotkeys = new ArrayList<>();
+
+        /**
+         * Returns the options whose value changed (not including the keys of hotkeys)
+         */
+        public List<IConfigBase> getChangedValues()
+        {
+            return this.changedValues;
+        }
+
+        /**
+         * Returns the hotkeys whose keys or keybind settings changed
+         */
+        public List<IHotkey> getChangedHotkeys()
+        {
+            return this.changedHotkeys;
+        }
+
+        public boolean isEmpty()
+        {
+            return this.changedValues.isEmpty() && this.changedHotkeys.isEmpty();
+        }
+    }
+
+    private interface IValueBinding
+    {
+        void apply(JsonElement element);
+
+        /**
+         * Sets the value if it's different from the current value
+         * @return true if the value changed
+         */
+        boolean applyIfChanged(JsonElement element);
+
+        void addTo(ChangeSet changes);
+    }
+
+    private static class ConfigValueBinding implements IValueBinding
+    {
+        private final IConfigBase option;
+
+        private ConfigValueBinding(IConfigBase option)
+        {
+            this.option = option;
+        }
+
+        @Override
+        public void apply(JsonElement element)
+        {
+            this.option.setValueFromJsonElement(element);
+        }
+
+        @Override
+        public boolean applyIfChanged(JsonElement element)
+        {
+            JsonElement current = this.option.getAsJsonElement();
+
+            if (element.equals(current))
+            {
+                return false;
+            }
+
+            this.apply(element);
+
+            // The element may have been invalid, or the same value in a different representation
+            return current.equals(this.option.getAsJsonElement()) == false;
+        }
+
+        @Override
+        public void addTo(ChangeSet changes)
+        {
+            changes.changedValues.add(this.option);
+        }
+    }
+
+    private static class HotkeyBinding implements IValueBinding
+    {
+        private final IHotkey hotkey;
+
+        private HotkeyBinding(IHotkey hotkey)
+        {
+            this.hotkey = hotkey;
+        }
+
+        @Override
+        public void apply(JsonElement element)
+        {
+            if (element.isJsonObject())
+            {
+                this.hotkey.getKeybind().setValueFromJsonElement(element);
+            }
+            // Backwards compatibility for reading the old simple keybinds
+            else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString())
+            {
+                this.hotkey.getKeybind().setValueFromString(element.getAsString());
+            }
+        }
+
+        @Override
+        public boolean applyIfChanged(JsonElement element)
+        {
+            IKeybind keybind = this.hotkey.getKeybind();
+            String keys = keybind.getStringValue();
+            JsonObject settings = keybind.getSettings().toJson();
+
+            this.apply(element);
+
+            return keys.equals(keybind.getStringValue()) == false ||
+                   settings.equals(keybind.getSettings().toJson()) == false;
+        }
+
+        @Override
+        public void addTo(ChangeSet changes)
+        {
+            changes.changedHotkeys.add(this.hotkey);
+        }
+    }
+}
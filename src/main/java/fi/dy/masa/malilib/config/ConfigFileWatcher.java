@@ -0,0 +1,168 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.File;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+import net.minecraft.client.MinecraftClient;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.interfaces.IClientTickHandler;
+import fi.dy.masa.malilib.util.FileUtils;
+import fi.dy.masa.malilib.util.JsonUtils;
+
+/**
+ * Watches the config directory for externally modified config files, and reloads them.
+ * Enabled via {@link MaLiLibConfigs.Generic#CONFIG_FILE_HOT_RELOAD}.<br>
+ * The file system events are collected on a background thread, and once a file
+ * has not changed for a short while, only the options whose value differs from
+ * the current value are applied on the client thread.
+ * This only works for the config handlers that use a {@link ConfigFileReader}.
+ */
+public class ConfigFileWatcher implements IClientTickHandler
+{
+    private static final ConfigFileWatcher INSTANCE = new ConfigFileWatcher();
+    private static final long DEBOUNCE_TIME_MS = 500L;
+
+    private final Map<Path, Long> changedFiles = new ConcurrentHashMap<>();
+    @Nullable private WatchService watchService;
+
+    public static ConfigFileWatcher getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private ConfigFileWatcher()
+    {
+    }
+
+    @Override
+    public void onClientTick(MinecraftClient mc)
+    {
+        boolean enabled = MaLiLibConfigs.Generic.CONFIG_FILE_HOT_RELOAD.getBooleanValue();
+
+        if (enabled && this.watchService == null)
+        {
+            this.start();
+        }
+        else if (enabled == false && this.watchService != null)
+        {
+            this.stop();
+        }
+
+        if (this.changedFiles.isEmpty() == false)
+        {
+            this.reloadChangedFiles();
+        }
+    }
+
+    private void start()
+    {
+        try
+        {
+            Path dir = FileUtils.getConfigDirectory().toPath().toAbsolutePath().normalize();
+            WatchService service = FileSystems.getDefault().newWatchService();
+
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            this.watchService = service;
+
+            Thread thread = new Thread(() -> this.watch(service, dir), "MaLiLib Config Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        catch (Exception e)
+        {
+            MaLiLib.logger.warn("Failed to start watching the config directory, disabling config hot-reload", e);
+            MaLiLibConfigs.Generic.CONFIG_FILE_HOT_RELOAD.setBooleanValue(false);
+        }
+    }
+
+    private void stop()
+    {
+        try
+        {
+            this.watchService.close();
+        }
+        catch (Exception ignore) {}
+
+        this.watchService = null;
+        this.changedFiles.clear();
+    }
+
+    private void watch(WatchService service, Path dir)
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = service.take();
+
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.context() instanceof Path name && name.toString().endsWith(".json"))
+                    {
+                        this.changedFiles.put(dir.resolve(name), System.currentTimeMillis());
+                    }
+                }
+
+                if (key.reset() == false)
+                {
+                    break;
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException ignore) {}
+    }
+
+    private void reloadChangedFiles()
+    {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> iter = this.changedFiles.entrySet().iterator();
+
+        while (iter.hasNext())
+        {
+            Map.Entry<Path, Long> entry = iter.next();
+
+            if (now - entry.getValue() < DEBOUNCE_TIME_MS)
+            {
+                continue;
+            }
+
+            // Only removes the entry if there hasn't been a new event in the meantime
+            if (this.changedFiles.remove(entry.getKey(), entry.getValue()) == false)
+            {
+                continue;
+            }
+
+            File file = entry.getKey().toFile();
+
+            // Ignore our own writes, and files that are about to be overwritten by a pending save
+            if (file.isFile() == false ||
+                JsonUtils.isUnmodifiedSinceWrite(file) ||
+                ConfigFileWriter.getInstance().getPendingData(file) != null)
+            {
+                continue;
+            }
+
+            ConfigFileReader.ChangeSet changes = ((ConfigManager) ConfigManager.getInstance()).reloadChangedConfigs(file);
+
+            if (changes != null && changes.isEmpty() == false)
+            {
+                // Changed hotkeys have already updated the keybind map incrementally
+                MaLiLib.logger.info("Reloaded {} changed config values and {} changed hotkeys from '{}'",
+                                    changes.getChangedValues().size(), changes.getChangedHotkeys().size(), file.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.util.JsonUtils;
+
+/**
+ * Writes the config files on a single background thread.<br>
+ * The config data is snapshotted into a {@link JsonObject} on the client thread, and the
+ * serialization and the file write happen later on the writer thread. Writes are debounced,
+ * so that multiple saves of the same file in quick succession only result in one write,
+ * with the latest data.<br>
+ * All the pending writes are flushed when exiting a world and when the client is stopping,
+ * and also from a shutdown hook as a last resort, for example if the game crashes.
+ */
+public class ConfigFileWriter
+{
+    private static final ConfigFileWriter INSTANCE = new ConfigFileWriter();
+    private static final long DEBOUNCE_TIME_MS = 500L;
+    private static final long FLUSH_TIMEOUT_MS = 30000L;
+
+    private final ScheduledExecutorService executor;
+    private final Map<File, JsonObject> pendingWrites = new LinkedHashMap<>();
+    private final Map<File, JsonObject> writesInProgress = new LinkedHashMap<>();
+    private boolean writeScheduled;
+
+    public static ConfigFileWriter getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private ConfigFileWriter()
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MaLiLib Config Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "MaLiLib Config Flush"));
+    }
+
+    /**
+     * Queues the given data to be written to the given file.
+     * <b>The data object must not be modified after it has been queued!</b>
+     * @param file
+     * @param root
+     */
+    public synchronized void queueWrite(File file, JsonObject root)
+    {
+        this.pendingWrites.put(file, root);
+
+        if (this.writeScheduled == false)
+        {
+            this.writeScheduled = true;
+            this.executor.schedule(this::writePending, DEBOUNCE_TIME_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the data still waiting to be written to the given file, if any
+     */
+    @Nullable
+    public synchronized JsonObject getPendingData(File file)
+    {
+        JsonObject root = this.pendingWrites.get(file);
+        return root != null ? root : this.writesInProgress.get(file);
+    }
+
+    /**
+     * Reads the given JSON file, taking into account any data still waiting to be written to it.
+     * This should be used for reading any files that are saved via this writer,
+     * so that loading right after saving sees the saved data.
+     * @param file
+     * @return the pending data, or the parsed file contents, or null if neither exists
+     */
+    @Nullable
+    public JsonElement readJsonFile(File file)
+    {
+        JsonObject pending = this.getPendingData(file);
+        return pending != null ? pending : JsonUtils.parseJsonFile(file);
+    }
+
+    /**
+     * Writes all the pending data right away, and waits for the writes to finish
+     */
+    public void flush()
+    {
+        try
+        {
+            Future<?> future = this.executor.submit(this::writePending);
+            future.get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.logger.error("Failed to flush the pending config file writes", e);
+        }
+    }
+
+    private void writePending()
+    {
+        Map<File, JsonObject> writes;
+
+        synchronized (this)
+        {
+            writes = new LinkedHashMap<>(this.pendingWrites);
+            this.writesInProgress.putAll(writes);
+            this.pendingWrites.clear();
+            this.writeScheduled = false;
+        }
+
+        for (Map.Entry<File, JsonObject> entry : writes.entrySet())
+        {
+            File file = entry.getKey();
+            File dir = file.getParentFile();
+
+            if ((dir.exists() && dir.isDirectory()) || dir.mkdirs())
+            {
+                JsonUtils.writeJsonToFile(entry.getValue(), file, true);
+            }
+            else
+            {
+                MaLiLib.logger.warn("Failed to create the config directory '{}'", dir.getAbsolutePath());
+            }
+
+            synchronized (this)
+            {
+                this.writesInProgress.remove(file, entry.getValue());
+            }
+        }
+    }
+}
@@ -1,13 +1,39 @@
 package fi.dy.masa.malilib.config;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.hotkeys.IHotkey;
+import fi.dy.masa.malilib.hotkeys.IKeybind;
 
 public class ConfigManager implements IConfigManager
 {
     private static final ConfigManager INSTANCE = new ConfigManager();
 
     private final Map<String, IConfigHandler> configHandlers = new HashMap<>();
+    private final Map<IConfigBase, String> configOwners = new IdentityHashMap<>();
+    private final Map<IKeybind, String> keybindOwners = new IdentityHashMap<>();
+    private final Set<String> cleanHandlers = new HashSet<>();
+    private final Map<String, List<IConfigChangeListener>> changeListeners = new HashMap<>();
+    private final ThreadLocal<BatchState> changeBatch = new ThreadLocal<>();
+    // The mod whose handler is being loaded or saved on the current thread
+    private final ThreadLocal<String> activeModId = new ThreadLocal<>();
 
     public static IConfigManager getInstance()
     {
@@ -18,6 +44,7 @@ public class ConfigManager implements IConfigManager
     public void registerConfigHandler(String modId, IConfigHandler handler)
     {
         this.configHandlers.put(modId, handler);
+        this.markDirty(modId);
     }
 
     @Override
@@ -27,7 +54,79 @@ public class ConfigManager implements IConfigManager
 
         if (handler != null)
         {
-            handler.onConfigsChanged();
+            // The handler is not marked as clean afterwards, as it's not known
+            // whether its onConfigsChanged() implementation saved the configs
+            this.markDirty(modId);
+            this.runForHandler(modId, handler::onConfigsChanged);
+        }
+    }
+
+    @Override
+    public void registerConfigChangeListener(String modId, IConfigChangeListener listener)
+    {
+        List<IConfigChangeListener> list = this.changeListeners.computeIfAbsent(modId, key -> new ArrayList<>());
+
+        if (list.contains(listener) == false)
+        {
+            list.add(listener);
+        }
+    }
+
+    @Override
+    public ConfigChangeBatch beginChangeBatch()
+    {
+        BatchState state = this.changeBatch.get();
+
+        if (state == null)
+        {
+            state = new BatchState();
+            this.changeBatch.set(state);
+        }
+
+        ++state.depth;
+
+        return new ConfigChangeBatch(this);
+    }
+
+    void endChangeBatch()
+    {
+        BatchState state = this.changeBatch.get();
+
+        if (state == null || --state.depth > 0)
+        {
+            return;
+        }
+
+        this.changeBatch.remove();
+
+        // Any changes made by the callbacks are delivered right away, as the batch is already closed
+        for (Map.Entry<IConfigBase, Runnable> entry : state.callbacks.entrySet())
+        {
+            try
+            {
+                entry.getValue().run();
+            }
+            catch (Exception e)
+            {
+                MaLiLib.logger.error("Exception in the value change callback of config '{}'", entry.getKey().getName(), e);
+            }
+        }
+
+        if (this.changeListeners.isEmpty() == false)
+        {
+            Map<String, List<IConfigBase>> changesByMod = new LinkedHashMap<>();
+
+            for (IConfigBase config : state.callbacks.keySet())
+            {
+                String modId = this.getOwner(config);
+
+                if (modId != null)
+                {
+                    changesByMod.computeIfAbsent(modId, key -> new ArrayList<>()).add(config);
+                }
+            }
+
+            changesByMod.forEach(this::notifyChangeListeners);
         }
     }
 
@@ -36,9 +135,54 @@ public class ConfigManager implements IConfigManager
      */
     public void loadAllConfigs()
     {
-        for (IConfigHandler handler : this.configHandlers.values())
+        // Read and parse the config files of all the handlers that support it in parallel,
+        // and then apply the values in the config objects here on the client thread
+        Map<String, CompletableFuture<ParsedFile>> parsedFiles = new HashMap<>();
+
+        for (Map.Entry<String, IConfigHandler> entry : this.configHandlers.entrySet())
+        {
+            IConfigHandler handler = entry.getValue();
+            File file = handler.getConfigFile();
+            ConfigFileReader reader = file != null ? handler.getConfigReader() : null;
+
+            // The other handlers would just read the file again in load()
+            if (reader != null || (file != null && handler.canLoadFromData()))
+            {
+                parsedFiles.put(entry.getKey(), CompletableFuture.supplyAsync(() -> ParsedFile.read(file, reader), ForkJoinPool.commonPool()));
+            }
+        }
+
+        long threshold = MaLiLibConfigs.Generic.SLOW_HANDLER_WARNING_THRESHOLD.getIntegerValue() * 1000L;
+
+        for (Map.Entry<String, IConfigHandler> entry : this.configHandlers.entrySet())
         {
-            handler.load();
+            String modId = entry.getKey();
+            IConfigHandler handler = entry.getValue();
+            CompletableFuture<ParsedFile> future = parsedFiles.get(modId);
+            ParsedFile parsed = future != null ? future.join() : null;
+            long start = System.nanoTime();
+
+            this.runForHandler(modId, () -> {
+                if (parsed != null && parsed.values != null)
+                {
+                    parsed.values.apply();
+                }
+                else if (parsed == null || parsed.data == null || handler.loadFromData(parsed.data) == false)
+                {
+                    handler.load();
+                }
+            });
+
+            this.markClean(modId);
+
+            long parseTime = parsed != null ? parsed.parseTime : 0L;
+            long applyTime = System.nanoTime() - start;
+
+            if (threshold > 0 && parseTime + applyTime >= threshold)
+            {
+                MaLiLib.logger.warn("Slow config handler '{}': loading took {} ms (read + parse: {} ms, apply: {} ms)",
+                                    modId, formatMillis(parseTime + applyTime), formatMillis(parseTime), formatMillis(applyTime));
+            }
         }
     }
 
@@ -47,9 +191,268 @@ public class ConfigManager implements IConfigManager
      */
     public void saveAllConfigs()
     {
-        for (IConfigHandler handler : this.configHandlers.values())
+        for (Map.Entry<String, IConfigHandler> entry : this.configHandlers.entrySet())
+        {
+            String modId = entry.getKey();
+
+            if (entry.getValue().supportsDirtyTracking() == false || this.isDirty(modId))
+            {
+                this.runForHandler(modId, () -> this.saveConfig(entry.getValue()));
+                this.markClean(modId);
+            }
+        }
+    }
+
+    /**
+     * Re-reads the given config file, if it belongs to a handler that uses the streaming
+     * {@link ConfigFileReader}, and applies only the values that differ from the current values.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     * @return the applied changes, or null if the file doesn't belong to any such handler
+     */
+    @Nullable
+    public ConfigFileReader.ChangeSet reloadChangedConfigs(File file)
+    {
+        Path path = file.toPath().toAbsolutePath().normalize();
+
+        for (Map.Entry<String, IConfigHandler> entry : this.configHandlers.entrySet())
+        {
+            IConfigHandler handler = entry.getValue();
+            File configFile = handler.getConfigFile();
+            ConfigFileReader reader = configFile != null ? handler.getConfigReader() : null;
+
+            if (reader != null && configFile.toPath().toAbsolutePath().normalize().equals(path))
+            {
+                // The file was modified externally, so it's always parsed instead of trusting the snapshot
+                ConfigFileReader.ParsedValues values = reader.parse(configFile, false);
+
+                if (values.isValid() == false)
+                {
+                    return null;
+                }
+
+                this.activeModId.set(entry.getKey());
+
+                try
+                {
+                    return values.applyChanged();
+                }
+                finally
+                {
+                    this.activeModId.remove();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks all the config handlers as dirty, so that they will be saved on the next
+     * {@link #saveAllConfigs()} call. This is needed after changing things that don't
+     * send value change notifications.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public synchronized void markAllDirty()
+    {
+        this.cleanHandlers.clear();
+    }
+
+    /**
+     * Called by the configs when their value changes.
+     * Marks the config handler that the config belongs to as dirty.
+     * If the owner of the config is not known, then all the handlers are marked as dirty.
+     * Then runs the given value change callback of the config and notifies the change listeners,
+     * either right away, or at the end of the current change batch.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onConfigValueChanged(IConfigBase config, Runnable callback)
+    {
+        String modId = this.markDirtyByConfig(config);
+        BatchState state = this.changeBatch.get();
+
+        if (state != null)
+        {
+            state.callbacks.putIfAbsent(config, callback);
+            return;
+        }
+
+        callback.run();
+
+        if (modId != null && this.changeListeners.isEmpty() == false)
+        {
+            this.notifyChangeListeners(modId, List.of(config));
+        }
+    }
+
+    private void notifyChangeListeners(String modId, List<IConfigBase> changedConfigs)
+    {
+        List<IConfigChangeListener> listeners = this.changeListeners.get(modId);
+
+        if (listeners != null)
+        {
+            List<IConfigBase> list = Collections.unmodifiableList(changedConfigs);
+
+            for (IConfigChangeListener listener : listeners)
+            {
+                try
+                {
+                    listener.onConfigsChanged(list);
+                }
+                catch (Exception e)
+                {
+                    MaLiLib.logger.error("Exception in a config change listener of mod '{}'", modId, e);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private synchronized String markDirtyByConfig(IConfigBase config)
+    {
+        String modId = this.configOwners.get(config);
+
+        if (modId != null)
+        {
+            this.cleanHandlers.remove(modId);
+        }
+        else
+        {
+            this.cleanHandlers.clear();
+        }
+
+        return modId;
+    }
+
+    /**
+     * Called by the keybinds when their keys change, as that doesn't cause a value change notification.
+     * Marks the config handler that the keybind's hotkey belongs to as dirty.
+     * If the owner of the keybind is not known, then all the handlers are marked as dirty.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public synchronized void onKeybindKeysChanged(IKeybind keybind)
+    {
+        String modId = this.keybindOwners.get(keybind);
+
+        if (modId != null)
+        {
+            this.cleanHandlers.remove(modId);
+        }
+        else
+        {
+            this.cleanHandlers.clear();
+        }
+    }
+
+    @Nullable
+    private synchronized String getOwner(IConfigBase config)
+    {
+        return this.configOwners.get(config);
+    }
+
+    /**
+     * Records the given configs as belonging to the config handler
+     * that is currently being loaded or saved on the current thread, if any
+     */
+    synchronized void trackConfigs(List<? extends IConfigBase> configs)
+    {
+        String modId = this.activeModId.get();
+
+        if (modId != null)
+        {
+            for (IConfigBase config : configs)
+            {
+                this.configOwners.put(config, modId);
+
+                if (config instanceof IHotkey hotkey)
+                {
+                    this.keybindOwners.put(hotkey.getKeybind(), modId);
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isDirty(String modId)
+    {
+        return this.cleanHandlers.contains(modId) == false;
+    }
+
+    private synchronized void markDirty(String modId)
+    {
+        this.cleanHandlers.remove(modId);
+    }
+
+    private synchronized void markClean(String modId)
+    {
+        this.cleanHandlers.add(modId);
+    }
+
+    private void runForHandler(String modId, Runnable task)
+    {
+        this.activeModId.set(modId);
+
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            this.activeModId.remove();
+        }
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+
+    /**
+     * Saves the configs of the given handler, via the background writer if the handler supports it
+     */
+    private void saveConfig(IConfigHandler handler)
+    {
+        File file = handler.getConfigFile();
+        JsonObject root = file != null ? handler.createSaveData() : null;
+
+        if (root != null)
+        {
+            ConfigFileWriter.getInstance().queueWrite(file, root);
+        }
+        else
         {
             handler.save();
         }
     }
+
+    private static class BatchState
+    {
+        private final Map<IConfigBase, Runnable> callbacks = new LinkedHashMap<>();
+        private int depth;
+    }
+
+    private static class ParsedFile
+    {
+        @Nullable private final JsonElement data;
+        @Nullable private final ConfigFileReader.ParsedValues values;
+        private final long parseTime;
+
+        private ParsedFile(@Nullable JsonElement data, @Nullable ConfigFileReader.ParsedValues values, long parseTime)
+        {
+            this.data = data;
+            this.values = values;
+            this.parseTime = parseTime;
+        }
+
+        private static ParsedFile read(File file, @Nullable ConfigFileReader reader)
+        {
+            long start = System.nanoTime();
+
+            if (reader != null)
+            {
+                return new ParsedFile(null, reader.parse(file), System.nanoTime() - start);
+            }
+
+            JsonElement data = ConfigFileWriter.getInstance().readJsonFile(file);
+            return new ParsedFile(data, null, System.nanoTime() - start);
+        }
+    }
 }
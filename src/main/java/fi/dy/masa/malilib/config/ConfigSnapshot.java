@@ -0,0 +1,265 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.util.JsonUtils;
+
+/**
+ * A compact binary copy of the option values of a JSON config file, stored next to the JSON file.
+ * The values are stored by their option index in the {@link ConfigFileReader}, and the snapshot
+ * is only used if the schema hash of the reader and the size and modification time
+ * of the JSON file still match the ones in the snapshot header.
+ * The JSON file is always the source of truth, the snapshot is just regenerated from it when needed.
+ */
+public class ConfigSnapshot
+{
+    private static final int MAGIC = 0x4D4C4353; // "MLCS"
+    private static final int VERSION = 2;
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    private static final byte TYPE_NULL     = 0;
+    private static final byte TYPE_TRUE     = 1;
+    private static final byte TYPE_FALSE    = 2;
+    private static final byte TYPE_NUMBER   = 3;
+    private static final byte TYPE_STRING   = 4;
+    private static final byte TYPE_ARRAY    = 5;
+    private static final byte TYPE_OBJECT   = 6;
+
+    public static File getSnapshotFile(File jsonFile)
+    {
+        return new File(jsonFile.getParentFile(), jsonFile.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the values from the snapshot of the given JSON file, if it exists and is up to date
+     * @return true if the values were read from the snapshot
+     */
+    static boolean read(File jsonFile, ConfigFileReader reader, ConfigFileReader.ParsedValues values)
+    {
+        File file = getSnapshotFile(jsonFile);
+
+        if (file.isFile() == false)
+        {
+            return false;
+        }
+
+        // Nothing in the snapshot can be longer than the snapshot file itself
+        long maxLength = file.length();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC ||
+                in.readInt() != VERSION ||
+                in.readLong() != reader.getSchemaHash() ||
+                in.readLong() != jsonFile.length() ||
+                in.readLong() != jsonFile.lastModified())
+            {
+                return false;
+            }
+
+            int count = in.readInt();
+            int optionCount = reader.getOptionCount();
+
+            for (int i = 0; i < count; ++i)
+            {
+                int index = in.readInt();
+
+                if (index < 0 || index >= optionCount)
+                {
+                    throw new IOException("Invalid option index " + index);
+                }
+
+                values.add(index, readElement(in, maxLength));
+            }
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            MaLiLib.logger.warn("Failed to read the config snapshot '{}', using the JSON file instead", file.getAbsolutePath(), e);
+            values.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the values that were just read from the given JSON file into its snapshot.
+     * The snapshot is written to a temporary file first, which then replaces the old snapshot.
+     * @param length the size of the JSON file before it was read
+     * @param lastModified the modification time of the JSON file before it was read
+     */
+    static void write(File jsonFile, long length, long lastModified, ConfigFileReader reader, ConfigFileReader.ParsedValues values)
+    {
+        File file = getSnapshotFile(jsonFile);
+        Path fileTmp = null;
+
+        try
+        {
+            fileTmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fileTmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(reader.getSchemaHash());
+                out.writeLong(length);
+                out.writeLong(lastModified);
+                out.writeInt(values.size());
+
+                for (int i = 0; i < values.size(); ++i)
+                {
+                    out.writeInt(values.getIndex(i));
+                    writeElement(out, values.getElement(i));
+                }
+            }
+
+            JsonUtils.moveFile(fileTmp, file.toPath());
+        }
+        catch (Exception e)
+        {
+            MaLiLib.logger.warn("Failed to write the config snapshot '{}'", file.getAbsolutePath(), e);
+
+            // Don't leave a partially written snapshot around
+            if (fileTmp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(fileTmp);
+                }
+                catch (Exception ignore) {}
+            }
+        }
+    }
+
+    private static void writeElement(DataOutputStream out, JsonElement element) throws IOException
+    {
+        if (element.isJsonPrimitive())
+        {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+
+            if (primitive.isBoolean())
+            {
+                out.writeByte(primitive.getAsBoolean() ? TYPE_TRUE : TYPE_FALSE);
+            }
+            else if (primitive.isNumber())
+            {
+                // Stored in the string form, so that the value reads back exactly as it was in the JSON file
+                out.writeByte(TYPE_NUMBER);
+                writeString(out, primitive.getAsString());
+            }
+            else
+            {
+                out.writeByte(TYPE_STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+        else if (element.isJsonArray())
+        {
+            JsonArray arr = element.getAsJsonArray();
+            out.writeByte(TYPE_ARRAY);
+            out.writeInt(arr.size());
+
+            for (JsonElement el : arr)
+            {
+                writeElement(out, el);
+            }
+        }
+        else if (element.isJsonObject())
+        {
+            JsonObject obj = element.getAsJsonObject();
+            out.writeByte(TYPE_OBJECT);
+            out.writeInt(obj.size());
+
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet())
+            {
+                writeString(out, entry.getKey());
+                writeElement(out, entry.getValue());
+            }
+        }
+        else
+        {
+            out.writeByte(TYPE_NULL);
+        }
+    }
+
+    private static JsonElement readElement(DataInputStream in, long maxLength) throws IOException
+    {
+        byte type = in.readByte();
+
+        switch (type)
+        {
+            case TYPE_NULL:     return JsonNull.INSTANCE;
+            case TYPE_TRUE:     return new JsonPrimitive(true);
+            case TYPE_FALSE:    return new JsonPrimitive(false);
+            case TYPE_NUMBER:   return new JsonPrimitive(new BigDecimal(readString(in, maxLength)));
+            case TYPE_STRING:   return new JsonPrimitive(readString(in, maxLength));
+            case TYPE_ARRAY:
+            {
+                int size = in.readInt();
+                JsonArray arr = new JsonArray();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    arr.add(readElement(in, maxLength));
+                }
+
+                return arr;
+            }
+            case TYPE_OBJECT:
+            {
+                int size = in.readInt();
+                JsonObject obj = new JsonObject();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    String key = readString(in, maxLength);
+                    obj.add(key, readElement(in, maxLength));
+                }
+
+                return obj;
+            }
+            default:
+                throw new IOException("Invalid value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        // DataOutputStream#writeUTF() is limited to 64 KiB
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0 || length > maxLength)
+        {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -13,6 +13,8 @@ public class ConfigUtils
 {
     public static void readConfigBase(JsonObject root, String category, List<? extends IConfigBase> options)
     {
+        getManager().trackConfigs(options);
+
         JsonObject obj = JsonUtils.getNestedObject(root, category, false);
 
         if (obj != null)
@@ -31,6 +33,8 @@ public class ConfigUtils
 
     public static void readHotkeys(JsonObject root, String keyHotkey, List<? extends IHotkey> hotkeys)
     {
+        getManager().trackConfigs(hotkeys);
+
         JsonObject objHotkeys = JsonUtils.getNestedObject(root, keyHotkey, false);
 
         if (objHotkeys != null)
@@ -68,6 +72,8 @@ public class ConfigUtils
 
     public static void writeConfigBase(JsonObject root, String category, List<? extends IConfigBase> options)
     {
+        getManager().trackConfigs(options);
+
         JsonObject obj = JsonUtils.getNestedObject(root, category, true);
 
         for (IConfigBase option : options)
@@ -82,6 +88,8 @@ public class ConfigUtils
         // not serialize the hotkey, but instead some other config data.
         // But of course all of this is just a mess in this old code base...
 
+        getManager().trackConfigs(hotkeys);
+
         JsonObject objHotkeys = JsonUtils.getNestedObject(root, category, true);
 
         for (IHotkey hotkey : hotkeys)
@@ -126,4 +134,9 @@ public class ConfigUtils
 
         return builder.build();
     }
+
+    private static ConfigManager getManager()
+    {
+        return (ConfigManager) ConfigManager.getInstance();
+    }
 }
@@ -0,0 +1,15 @@
+package fi.dy.masa.malilib.config;
+
+import java.util.List;
+
+public interface IConfigChangeListener
+{
+    /**
+     * Called after config values of the mod the listener was registered for have changed.
+     * Outside of a {@link ConfigChangeBatch}, this is called for each change separately.
+     * Within a batch, this is called once when the batch is committed,
+     * with all the configs that changed during the batch (each config only once).
+     * @param changedConfigs the configs that changed, in the order they were first changed
+     */
+    void onConfigsChanged(List<IConfigBase> changedConfigs);
+}
@@ -1,5 +1,10 @@
 package fi.dy.masa.malilib.config;
 
+import java.io.File;
+import javax.annotation.Nullable;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 public interface IConfigHandler
 {
     /**
@@ -20,4 +25,76 @@ public interface IConfigHandler
      * Called to save any potential config changes to a file
      */
     void save();
+
+    /**
+     * Returns the config file of this handler, if it supports the asynchronous save pipeline.
+     * If this returns non-null, then when {@link ConfigManager} saves all the configs, it calls
+     * {@link #createSaveData()} instead of {@link #save()}, and the data is written to the file
+     * by the {@link ConfigFileWriter} on a background thread.
+     * The handler should then also read its file via {@link ConfigFileWriter#readJsonFile(File)}.
+     */
+    @Nullable
+    default File getConfigFile()
+    {
+        return null;
+    }
+
+    /**
+     * Returns a reader for {@link #getConfigFile()}, if the handler supports the streaming loader.
+     * If this returns non-null, then when {@link ConfigManager} loads all the configs, it parses the file
+     * with the reader on a background thread, and then applies the values on the client thread,
+     * instead of calling {@link #loadFromData(JsonElement)} or {@link #load()}.
+     */
+    @Nullable
+    default ConfigFileReader getConfigReader()
+    {
+        return null;
+    }
+
+    /**
+     * Applies the config values from the given data, which has been read from {@link #getConfigFile()}.
+     * This allows {@link ConfigManager} to read and parse the config files of all the mods
+     * in parallel on background threads, and only apply the values on the client thread.
+     * Only called if {@link #canLoadFromData()} returns true.
+     * @param data the parsed contents of the config file
+     * @return true if the data was applied, or false to call {@link #load()} instead
+     */
+    default boolean loadFromData(JsonElement data)
+    {
+        return false;
+    }
+
+    /**
+     * Returns true if this handler implements {@link #loadFromData(JsonElement)}.
+     * Otherwise the config file isn't read in advance by the {@link ConfigManager},
+     * as {@link #load()} would read it again anyway.
+     */
+    default boolean canLoadFromData()
+    {
+        return false;
+    }
+
+    /**
+     * Returns true if the {@link ConfigManager} can skip saving this handler when none of its configs have changed.
+     * This requires that the handler reads its configs via the {@link ConfigUtils} methods
+     * or a {@link ConfigFileReader}, as those record which configs belong to the handler,
+     * and that all the saved data comes from those configs.
+     * Otherwise the handler is saved every time all the configs are saved.
+     */
+    default boolean supportsDirtyTracking()
+    {
+        return false;
+    }
+
+    /**
+     * Creates a snapshot of the current config values to be written to {@link #getConfigFile()}.
+     * This is called on the client thread. <b>The returned object must not be modified afterwards</b>,
+     * as it will be serialized on another thread.
+     * @return the data to save, or null to call {@link #save()} instead
+     */
+    @Nullable
+    default JsonObject createSaveData()
+    {
+        return null;
+    }
 }
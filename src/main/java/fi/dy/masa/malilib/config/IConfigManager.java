@@ -14,4 +14,25 @@ public interface IConfigManager
      * @param modId
      */
     void onConfigsChanged(String modId);
+
+    /**
+     * Registers a listener that gets notified when the config values of the given mod change.
+     * The configs are associated with the mod when its config handler loads or saves them.
+     * @param modId
+     * @param listener
+     */
+    default void registerConfigChangeListener(String modId, IConfigChangeListener listener)
+    {
+    }
+
+    /**
+     * Begins a batch of config changes on the current thread. The change callbacks and
+     * listeners are called with the coalesced changes when the outermost batch is closed.
+     * By default this begins the batch in the malilib config manager.
+     * @return the batch, which must be closed
+     */
+    default ConfigChangeBatch beginChangeBatch()
+    {
+        return ((ConfigManager) ConfigManager.getInstance()).beginChangeBatch();
+    }
 }
@@ -47,7 +47,9 @@ public class ConfigPanelAllHotkeys extends GuiModConfigs
     @Override
     protected void onSettingsChanged()
     {
-        ((ConfigManager) ConfigManager.getInstance()).saveAllConfigs();
-        InputEventHandler.getKeybindManager().updateUsedKeys();
+        ConfigManager manager = (ConfigManager) ConfigManager.getInstance();
+        // The hotkey changes don't send value change notifications
+        manager.markAllDirty();
+        manager.saveAllConfigs();
     }
 }
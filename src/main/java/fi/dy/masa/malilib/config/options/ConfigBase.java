@@ -1,6 +1,7 @@
 package fi.dy.masa.malilib.config.options;
 
 import javax.annotation.Nullable;
+import fi.dy.masa.malilib.config.ConfigManager;
 import fi.dy.masa.malilib.config.ConfigType;
 import fi.dy.masa.malilib.config.IConfigBase;
 import fi.dy.masa.malilib.config.IConfigNotifiable;
@@ -66,9 +67,14 @@ public abstract class ConfigBase<T extends IConfigBase> implements IConfigBase,
         this.callback = callback;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onValueChanged()
+    {
+        ((ConfigManager) ConfigManager.getInstance()).onConfigValueChanged(this, this::runValueChangeCallback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runValueChangeCallback()
     {
         if (this.callback != null)
         {
@@ -0,0 +1,141 @@
+package fi.dy.masa.malilib.event;
+
+import java.util.Arrays;
+
+/**
+ * A copy-on-write list of event handlers.
+ * Registering and un-registering creates a new array, and the event dispatchers
+ * iterate the array snapshot returned by {@link #getHandlers()}. This means that the
+ * dispatch doesn't allocate anything, and that handlers can safely register or
+ * un-register handlers (including themselves) while an event is being dispatched.
+ * Those changes will take effect starting from the next event.<br>
+ * Handlers are de-duplicated by identity. Handlers with a higher priority are called first,
+ * and handlers with the same priority are called in their registration order.
+ * @param <T> the handler type
+ */
+public class HandlerList<T>
+{
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private volatile T[] handlers;
+    private int[] priorities = new int[0];
+
+    /**
+     * @param emptyArray an empty array of the handler type, used as the initial snapshot
+     */
+    public HandlerList(T[] emptyArray)
+    {
+        this.handlers = emptyArray;
+    }
+
+    /**
+     * Returns the current snapshot of the handlers.
+     * <b>The returned array must not be modified!</b>
+     * @return
+     */
+    public T[] getHandlers()
+    {
+        return this.handlers;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.handlers.length == 0;
+    }
+
+    public boolean contains(T handler)
+    {
+        return this.indexOf(handler) != -1;
+    }
+
+    /**
+     * Registers the handler with the default priority, if it's not already registered
+     * @param handler
+     * @return true if the handler was added
+     */
+    public boolean register(T handler)
+    {
+        return this.register(handler, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Registers the handler with the given priority, if it's not already registered.
+     * Handlers with a higher priority get called before handlers with a lower priority.
+     * @param handler
+     * @param priority
+     * @return true if the handler was added
+     */
+    public synchronized boolean register(T handler, int priority)
+    {
+        if (this.indexOf(handler) != -1)
+        {
+            return false;
+        }
+
+        T[] oldHandlers = this.handlers;
+        final int size = oldHandlers.length;
+        int index = size;
+
+        // Insert after all the existing handlers with the same or a higher priority
+        while (index > 0 && this.priorities[index - 1] < priority)
+        {
+            --index;
+        }
+
+        T[] newHandlers = Arrays.copyOf(oldHandlers, size + 1);
+        int[] newPriorities = Arrays.copyOf(this.priorities, size + 1);
+
+        System.arraycopy(oldHandlers, index, newHandlers, index + 1, size - index);
+        System.arraycopy(this.priorities, index, newPriorities, index + 1, size - index);
+        newHandlers[index] = handler;
+        newPriorities[index] = priority;
+
+        this.priorities = newPriorities;
+        this.handlers = newHandlers;
+
+        return true;
+    }
+
+    /**
+     * Un-registers a previously registered handler
+     * @param handler
+     * @return true if the handler was registered
+     */
+    public synchronized boolean unregister(T handler)
+    {
+        int index = this.indexOf(handler);
+
+        if (index == -1)
+        {
+            return false;
+        }
+
+        T[] oldHandlers = this.handlers;
+        final int size = oldHandlers.length;
+        T[] newHandlers = Arrays.copyOf(oldHandlers, size - 1);
+        int[] newPriorities = Arrays.copyOf(this.priorities, size - 1);
+
+        System.arraycopy(oldHandlers, index + 1, newHandlers, index, size - index - 1);
+        System.arraycopy(this.priorities, index + 1, newPriorities, index, size - index - 1);
+
+        this.priorities = newPriorities;
+        this.handlers = newHandlers;
+
+        return true;
+    }
+
+    private int indexOf(T handler)
+    {
+        T[] handlers = this.handlers;
+
+        for (int i = 0; i < handlers.length; ++i)
+        {
+            if (handlers[i] == handler)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,242 @@
+package fi.dy.masa.malilib.event;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.data.DataDump;
+import fi.dy.masa.malilib.util.TimingHistogram;
+
+/**
+ * Timing statistics for the handlers called by the malilib event dispatchers.
+ * Each dispatched handler call is timed via {@link System#nanoTime()} and recorded
+ * into a per-handler rolling {@link TimingHistogram}. The per-handler timing slots are
+ * created when the handler gets registered, and removed when it gets un-registered.
+ * The statistics are only collected when {@link MaLiLibConfigs.Generic#HANDLER_TIMING_STATS} is enabled,
+ * and the slow handler warnings only when {@link MaLiLibConfigs.Generic#SLOW_HANDLER_WARNING_THRESHOLD} is above 0.
+ * When neither is enabled, the handler calls are not timed at all.
+ */
+public class HandlerTimings
+{
+    public static final String RENDER_OVERLAY       = "render_overlay";
+    public static final String RENDER_TOOLTIP       = "render_tooltip";
+    public static final String RENDER_WORLD_LAST    = "render_world_last";
+    public static final String CLIENT_TICK          = "client_tick";
+    public static final String INPUT_KEYBOARD       = "input_keyboard";
+    public static final String INPUT_MOUSE          = "input_mouse";
+
+    private static final HandlerTimings INSTANCE = new HandlerTimings();
+    private static final long WARNING_INTERVAL = 30000000000L; // 30 seconds
+
+    private final Map<String, Category> categories = new LinkedHashMap<>();
+
+    public static HandlerTimings getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns true if the handler calls should currently be timed
+     */
+    public static boolean isEnabled()
+    {
+        return MaLiLibConfigs.Generic.HANDLER_TIMING_STATS.getBooleanValue() ||
+               MaLiLibConfigs.Generic.SLOW_HANDLER_WARNING_THRESHOLD.getIntegerValue() > 0;
+    }
+
+    /**
+     * Returns the timing category by the given name, creating it if necessary
+     * @param name
+     * @return
+     */
+    public synchronized Category getCategory(String name)
+    {
+        return this.categories.computeIfAbsent(name, Category::new);
+    }
+
+    public synchronized List<Category> getCategories()
+    {
+        return new ArrayList<>(this.categories.values());
+    }
+
+    public void clear()
+    {
+        for (Category category : this.getCategories())
+        {
+            category.clear();
+        }
+    }
+
+    /**
+     * Creates a data dump of the timings of all the handlers in all categories.
+     * The times are in milliseconds.
+     * @param format
+     * @return
+     */
+    public DataDump createDataDump(DataDump.Format format)
+    {
+        DataDump dump = new DataDump(8, format);
+
+        for (Category category : this.getCategories())
+        {
+            for (Timing timing : category.getTimings())
+            {
+                TimingHistogram histogram = timing.getHistogram();
+                long[] percentiles = histogram.getPercentiles(0.5, 0.95, 0.99);
+
+                dump.addData(category.getName(), timing.getName(),
+                             String.valueOf(histogram.getTotalCount()),
+                             formatMillis(histogram.getAverage()),
+                             formatMillis(percentiles[0]),
+                             formatMillis(percentiles[1]),
+                             formatMillis(percentiles[2]),
+                             formatMillis(histogram.getMax()));
+            }
+        }
+
+        dump.addTitle("Category", "Handler", "Calls", "Avg ms", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+
+        for (int i = 2; i < 8; ++i)
+        {
+            dump.setColumnProperties(i, DataDump.Alignment.RIGHT, true);
+        }
+
+        dump.setUseColumnSeparator(true);
+
+        return dump;
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.3f", (double) nanos / 1000000.0);
+    }
+
+    public static class Category
+    {
+        private final String name;
+        // Copy-on-write, so that the lookups done for each dispatched call don't need any locking
+        private volatile Map<Object, Timing> timings = new IdentityHashMap<>();
+
+        private Category(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * Creates the timing slot for the given handler. Called when the handler gets registered.
+         * @param handler
+         */
+        public synchronized void add(Object handler)
+        {
+            if (this.timings.containsKey(handler) == false)
+            {
+                Map<Object, Timing> map = new IdentityHashMap<>(this.timings);
+                map.put(handler, new Timing(handler.getClass().getName()));
+                this.timings = map;
+            }
+        }
+
+        /**
+         * Removes the timing slot of the given handler. Called when the handler gets un-registered,
+         * so that the handler doesn't get kept alive by its timings.
+         * @param handler
+         */
+        public synchronized void remove(Object handler)
+        {
+            if (this.timings.containsKey(handler))
+            {
+                Map<Object, Timing> map = new IdentityHashMap<>(this.timings);
+                map.remove(handler);
+                this.timings = map;
+            }
+        }
+
+        /**
+         * Records the time spent in the given handler, from <b>startTime</b> until now.
+         * Must be called on the thread that dispatches the events of this category.
+         * @param handler
+         * @param startTime the start time, from {@link System#nanoTime()}
+         */
+        public void record(Object handler, long startTime)
+        {
+            long now = System.nanoTime();
+            Timing timing = this.timings.get(handler);
+
+            if (timing != null)
+            {
+                long duration = now - startTime;
+
+                if (MaLiLibConfigs.Generic.HANDLER_TIMING_STATS.getBooleanValue())
+                {
+                    timing.histogram.addSample(duration);
+                }
+
+                timing.checkThreshold(this.name, duration, now);
+            }
+        }
+
+        @Nullable
+        public Timing getTiming(Object handler)
+        {
+            return this.timings.get(handler);
+        }
+
+        public List<Timing> getTimings()
+        {
+            return new ArrayList<>(this.timings.values());
+        }
+
+        public void clear()
+        {
+            for (Timing timing : this.timings.values())
+            {
+                timing.histogram.clear();
+            }
+        }
+    }
+
+    public static class Timing
+    {
+        private final String name;
+        // The samples are only added from the dispatching thread
+        private final TimingHistogram histogram = new TimingHistogram(TimingHistogram.DEFAULT_WINDOW_SIZE, false);
+        private volatile long lastWarningTime;
+
+        private Timing(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public TimingHistogram getHistogram()
+        {
+            return this.histogram;
+        }
+
+        private void checkThreshold(String category, long duration, long now)
+        {
+            long threshold = MaLiLibConfigs.Generic.SLOW_HANDLER_WARNING_THRESHOLD.getIntegerValue() * 1000L;
+
+            if (threshold > 0 && duration > threshold &&
+                (this.lastWarningTime == 0 || now - this.lastWarningTime >= WARNING_INTERVAL))
+            {
+                this.lastWarningTime = now;
+                MaLiLib.logger.warn("Slow {} handler '{}': took {} ms (warning threshold: {} ms)",
+                                    category, this.name, formatMillis(duration), formatMillis(threshold));
+            }
+        }
+    }
+}
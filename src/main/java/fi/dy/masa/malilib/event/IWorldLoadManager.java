@@ -10,6 +10,19 @@ public interface IWorldLoadManager
      */
     void registerWorldLoadPreHandler(IWorldLoadListener listener);
 
+    /**
+     * Registers a handler for listening to client world changes, with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param listener
+     * @param priority
+     */
+    default void registerWorldLoadPreHandler(IWorldLoadListener listener, int priority)
+    {
+        this.registerWorldLoadPreHandler(listener);
+    }
+
     /**
      * Un-registers a previously registered client world change handler.
      * @param listener
@@ -22,6 +35,19 @@ public interface IWorldLoadManager
      */
     void registerWorldLoadPostHandler(IWorldLoadListener listener);
 
+    /**
+     * Registers a handler for listening to client world changes, with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param listener
+     * @param priority
+     */
+    default void registerWorldLoadPostHandler(IWorldLoadListener listener, int priority)
+    {
+        this.registerWorldLoadPostHandler(listener);
+    }
+
     /**
      * Un-registers a previously registered client world change handler.
      * @param listener
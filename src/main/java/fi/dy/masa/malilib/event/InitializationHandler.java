@@ -40,6 +40,9 @@ public class InitializationHandler implements IInitializationDispatcher
         }
 
         ((ConfigManager) ConfigManager.getInstance()).loadAllConfigs();
-        InputEventHandler.getKeybindManager().updateUsedKeys();
+
+        // The keybind map is built once here for all the keybind providers registered during the init,
+        // after that any keybind changes get applied to it incrementally
+        ((InputEventHandler) InputEventHandler.getKeybindManager()).onGameInitDone();
     }
 }
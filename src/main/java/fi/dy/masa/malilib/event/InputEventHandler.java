@@ -1,10 +1,8 @@
 package fi.dy.masa.malilib.event;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import javax.annotation.Nullable;
 import org.lwjgl.glfw.GLFW;
 
 import net.minecraft.client.MinecraftClient;
@@ -19,6 +17,7 @@ import fi.dy.masa.malilib.hotkeys.IKeybindProvider;
 import fi.dy.masa.malilib.hotkeys.IKeyboardInputHandler;
 import fi.dy.masa.malilib.hotkeys.IMouseInputHandler;
 import fi.dy.masa.malilib.hotkeys.KeybindCategory;
+import fi.dy.masa.malilib.hotkeys.KeybindMatcher;
 import fi.dy.masa.malilib.hotkeys.KeybindMulti;
 import fi.dy.masa.malilib.util.InfoUtils;
 
@@ -27,11 +26,15 @@ public class InputEventHandler implements IKeybindManager, IInputManager
     private static final InputEventHandler INSTANCE = new InputEventHandler();
 
     private final MinecraftClient mc;
-    private final Multimap<Integer, IKeybind> hotkeyMap = ArrayListMultimap.create();
+    private KeybindMatcher keybindMatcher = new KeybindMatcher();
+    @Nullable private KeybindMatcher rebuiltKeybindMatcher;
+    private boolean gameInitDone;
     private final List<KeybindCategory> allKeybinds = new ArrayList<>();
-    private final List<IKeybindProvider> keybindProviders = new ArrayList<>();
-    private final List<IKeyboardInputHandler> keyboardHandlers = new ArrayList<>();
-    private final List<IMouseInputHandler> mouseHandlers = new ArrayList<>();
+    private final HandlerList<IKeybindProvider> keybindProviders = new HandlerList<>(new IKeybindProvider[0]);
+    private final HandlerList<IKeyboardInputHandler> keyboardHandlers = new HandlerList<>(new IKeyboardInputHandler[0]);
+    private final HandlerList<IMouseInputHandler> mouseHandlers = new HandlerList<>(new IMouseInputHandler[0]);
+    private final HandlerTimings.Category keyboardTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.INPUT_KEYBOARD);
+    private final HandlerTimings.Category mouseTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.INPUT_MOUSE);
     private double mouseWheelDeltaSum;
 
     private InputEventHandler()
@@ -52,18 +55,25 @@ public class InputEventHandler implements IKeybindManager, IInputManager
     @Override
     public void registerKeybindProvider(IKeybindProvider provider)
     {
-        if (this.keybindProviders.contains(provider) == false)
+        this.keybindProviders.register(provider);
+        provider.addHotkeys(this);
+
+        // The providers registered during the game init get added in one rebuild once the init is done
+        if (this.gameInitDone)
         {
-            this.keybindProviders.add(provider);
+            this.updateUsedKeys();
         }
-
-        provider.addHotkeys(this);
     }
 
     @Override
     public void unregisterKeybindProvider(IKeybindProvider provider)
     {
-        this.keybindProviders.remove(provider);
+        this.keybindProviders.unregister(provider);
+
+        if (this.gameInitDone)
+        {
+            this.updateUsedKeys();
+        }
     }
 
     @Override
@@ -72,25 +82,59 @@ public class InputEventHandler implements IKeybindManager, IInputManager
         return this.allKeybinds;
     }
 
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onGameInitDone()
+    {
+        this.gameInitDone = true;
+        this.updateUsedKeys();
+    }
+
     @Override
     public void updateUsedKeys()
     {
-        this.hotkeyMap.clear();
+        // The new map is built separately, so that the current map stays intact until the new one is complete
+        KeybindMatcher matcher = new KeybindMatcher();
+        this.rebuiltKeybindMatcher = matcher;
 
-        for (IKeybindProvider handler : this.keybindProviders)
+        try
         {
-            handler.addKeysToMap(this);
+            for (IKeybindProvider handler : this.keybindProviders.getHandlers())
+            {
+                handler.addKeysToMap(this);
+            }
         }
+        finally
+        {
+            this.rebuiltKeybindMatcher = null;
+        }
+
+        this.keybindMatcher = matcher;
     }
 
     @Override
     public void addKeybindToMap(IKeybind keybind)
     {
-        Collection<Integer> keys = keybind.getKeys();
+        if (this.rebuiltKeybindMatcher != null)
+        {
+            this.rebuiltKeybindMatcher.add(keybind);
+        }
+        else
+        {
+            this.keybindMatcher.add(keybind);
+        }
+    }
 
-        for (int key : keys)
+    @Override
+    public void onKeybindKeysChanged(IKeybind keybind, int[] removedKeys, int[] addedKeys)
+    {
+        // Keybinds that are not in the map are ignored by the matchers
+        this.keybindMatcher.updateKeys(keybind, removedKeys, addedKeys);
+
+        if (this.rebuiltKeybindMatcher != null)
         {
-            this.hotkeyMap.put(key, keybind);
+            this.rebuiltKeybindMatcher.updateKeys(keybind, removedKeys, addedKeys);
         }
     }
 
@@ -107,31 +151,45 @@ public class InputEventHandler implements IKeybindManager, IInputManager
     @Override
     public void registerKeyboardInputHandler(IKeyboardInputHandler handler)
     {
-        if (this.keyboardHandlers.contains(handler) == false)
-        {
-            this.keyboardHandlers.add(handler);
-        }
+        this.registerKeyboardInputHandler(handler, HandlerList.DEFAULT_PRIORITY);
     }
 
     @Override
-    public void unregisterKeyboardInputHandler(IKeyboardInputHandler handler)
+    public void registerKeyboardInputHandler(IKeyboardInputHandler handler, int priority)
     {
-        this.keyboardHandlers.remove(handler);
+        this.keyboardTimings.add(handler);
+        this.keyboardHandlers.register(handler, priority);
     }
 
     @Override
-    public void registerMouseInputHandler(IMouseInputHandler handler)
+    public void unregisterKeyboardInputHandler(IKeyboardInputHandler handler)
     {
-        if (this.mouseHandlers.contains(handler) == false)
+        if (this.keyboardHandlers.unregister(handler))
         {
-            this.mouseHandlers.add(handler);
+            this.keyboardTimings.remove(handler);
         }
     }
 
+    @Override
+    public void registerMouseInputHandler(IMouseInputHandler handler)
+    {
+        this.registerMouseInputHandler(handler, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerMouseInputHandler(IMouseInputHandler handler, int priority)
+    {
+        this.mouseTimings.add(handler);
+        this.mouseHandlers.register(handler, priority);
+    }
+
     @Override
     public void unregisterMouseInputHandler(IMouseInputHandler handler)
     {
-        this.mouseHandlers.remove(handler);
+        if (this.mouseHandlers.unregister(handler))
+        {
+            this.mouseTimings.remove(handler);
+        }
     }
 
     /**
@@ -148,9 +206,19 @@ public class InputEventHandler implements IKeybindManager, IInputManager
 
         if (this.keyboardHandlers.isEmpty() == false)
         {
-            for (IKeyboardInputHandler handler : this.keyboardHandlers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IKeyboardInputHandler handler : this.keyboardHandlers.getHandlers())
             {
-                if (handler.onKeyInput(keyCode, scanCode, modifiers, eventKeyState))
+                long startTime = timed ? System.nanoTime() : 0L;
+                boolean handled = handler.onKeyInput(keyCode, scanCode, modifiers, eventKeyState);
+
+                if (timed)
+                {
+                    this.keyboardTimings.record(handler, startTime);
+                }
+
+                if (handled)
                 {
                     this.printInputCancellationDebugMessage(handler);
                     return true;
@@ -179,9 +247,19 @@ public class InputEventHandler implements IKeybindManager, IInputManager
 
             if (this.mouseHandlers.isEmpty() == false)
             {
-                for (IMouseInputHandler handler : this.mouseHandlers)
+                boolean timed = HandlerTimings.isEnabled();
+
+                for (IMouseInputHandler handler : this.mouseHandlers.getHandlers())
                 {
-                    if (handler.onMouseClick(mouseX, mouseY, eventButton, eventButtonState))
+                    long startTime = timed ? System.nanoTime() : 0L;
+                    boolean handled = handler.onMouseClick(mouseX, mouseY, eventButton, eventButtonState);
+
+                    if (timed)
+                    {
+                        this.mouseTimings.record(handler, startTime);
+                    }
+
+                    if (handled)
                     {
                         this.printInputCancellationDebugMessage(handler);
                         return true;
@@ -235,9 +313,19 @@ public class InputEventHandler implements IKeybindManager, IInputManager
             {
                 this.mouseWheelDeltaSum -= amount;
 
-                for (IMouseInputHandler handler : this.mouseHandlers)
+                boolean timed = HandlerTimings.isEnabled();
+
+                for (IMouseInputHandler handler : this.mouseHandlers.getHandlers())
                 {
-                    if (handler.onMouseScroll(mouseX, mouseY, amount))
+                    long startTime = timed ? System.nanoTime() : 0L;
+                    boolean handled = handler.onMouseScroll(mouseX, mouseY, amount);
+
+                    if (timed)
+                    {
+                        this.mouseTimings.record(handler, startTime);
+                    }
+
+                    if (handled)
                     {
                         this.printInputCancellationDebugMessage(handler);
                         return true;
@@ -256,9 +344,17 @@ public class InputEventHandler implements IKeybindManager, IInputManager
     {
         if (this.mouseHandlers.isEmpty() == false)
         {
-            for (IMouseInputHandler handler : this.mouseHandlers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IMouseInputHandler handler : this.mouseHandlers.getHandlers())
             {
+                long startTime = timed ? System.nanoTime() : 0L;
                 handler.onMouseMove(mouseX, mouseY);
+
+                if (timed)
+                {
+                    this.mouseTimings.record(handler, startTime);
+                }
             }
         }
     }
@@ -266,14 +362,15 @@ public class InputEventHandler implements IKeybindManager, IInputManager
     private boolean checkKeyBindsForChanges(int eventKey)
     {
         boolean cancel = false;
-        Collection<IKeybind> keybinds = this.hotkeyMap.get(eventKey);
+        KeybindMatcher.Entry[] entries = this.keybindMatcher.getEntries(eventKey);
 
-        if (keybinds.isEmpty() == false)
+        for (KeybindMatcher.Entry entry : entries)
         {
-            for (IKeybind keybind : keybinds)
+            // Note: isPressed() has to get called for key releases too, to reset the state.
+            // Keybinds that are not active and don't have all their keys held can't change state, so they are skipped.
+            if (entry.canChangeState())
             {
-                // Note: isPressed() has to get called for key releases too, to reset the state
-                cancel |= keybind.updateIsPressed();
+                cancel |= entry.getKeybind().updateIsPressed();
             }
         }
 
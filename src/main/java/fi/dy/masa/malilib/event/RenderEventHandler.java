@@ -1,7 +1,5 @@
 package fi.dy.masa.malilib.event;
 
-import java.util.ArrayList;
-import java.util.List;
 import org.joml.Matrix4f;
 
 import net.minecraft.client.MinecraftClient;
@@ -10,17 +8,23 @@ import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.item.ItemStack;
 
+import fi.dy.masa.malilib.interfaces.ICachedOverlayRenderer;
 import fi.dy.masa.malilib.interfaces.IRenderDispatcher;
 import fi.dy.masa.malilib.interfaces.IRenderer;
+import fi.dy.masa.malilib.render.OverlayRenderCache;
 import fi.dy.masa.malilib.util.InfoUtils;
 
 public class RenderEventHandler implements IRenderDispatcher
 {
     private static final RenderEventHandler INSTANCE = new RenderEventHandler();
 
-    private final List<IRenderer> overlayRenderers = new ArrayList<>();
-    private final List<IRenderer> tooltipLastRenderers = new ArrayList<>();
-    private final List<IRenderer> worldLastRenderers = new ArrayList<>();
+    private final HandlerList<IRenderer> overlayRenderers = new HandlerList<>(new IRenderer[0]);
+    private final HandlerList<IRenderer> tooltipLastRenderers = new HandlerList<>(new IRenderer[0]);
+    private final HandlerList<IRenderer> worldLastRenderers = new HandlerList<>(new IRenderer[0]);
+    private final OverlayRenderCache overlayRenderCache = new OverlayRenderCache();
+    private final HandlerTimings.Category overlayTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.RENDER_OVERLAY);
+    private final HandlerTimings.Category tooltipLastTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.RENDER_TOOLTIP);
+    private final HandlerTimings.Category worldLastTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.RENDER_WORLD_LAST);
 
     public static IRenderDispatcher getInstance()
     {
@@ -30,30 +34,84 @@ public class RenderEventHandler implements IRenderDispatcher
     @Override
     public void registerGameOverlayRenderer(IRenderer renderer)
     {
-        if (this.overlayRenderers.contains(renderer) == false)
+        this.registerGameOverlayRenderer(renderer, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerGameOverlayRenderer(IRenderer renderer, int priority)
+    {
+        this.overlayTimings.add(renderer);
+        this.overlayRenderers.register(renderer, priority);
+    }
+
+    @Override
+    public void registerTooltipLastRenderer(IRenderer renderer)
+    {
+        this.registerTooltipLastRenderer(renderer, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerTooltipLastRenderer(IRenderer renderer, int priority)
+    {
+        this.tooltipLastTimings.add(renderer);
+        this.tooltipLastRenderers.register(renderer, priority);
+    }
+
+    @Override
+    public void registerWorldLastRenderer(IRenderer renderer)
+    {
+        this.registerWorldLastRenderer(renderer, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerWorldLastRenderer(IRenderer renderer, int priority)
+    {
+        this.worldLastTimings.add(renderer);
+        this.worldLastRenderers.register(renderer, priority);
+    }
+
+    @Override
+    public void unregisterGameOverlayRenderer(IRenderer renderer)
+    {
+        if (this.overlayRenderers.unregister(renderer))
         {
-            this.overlayRenderers.add(renderer);
+            this.overlayTimings.remove(renderer);
+        }
+
+        if (renderer instanceof ICachedOverlayRenderer)
+        {
+            this.overlayRenderCache.remove((ICachedOverlayRenderer) renderer);
         }
     }
 
     @Override
-    public void registerTooltipLastRenderer(IRenderer renderer)
+    public void unregisterTooltipLastRenderer(IRenderer renderer)
     {
-        if (this.tooltipLastRenderers.contains(renderer) == false)
+        if (this.tooltipLastRenderers.unregister(renderer))
         {
-            this.tooltipLastRenderers.add(renderer);
+            this.tooltipLastTimings.remove(renderer);
         }
     }
 
     @Override
-    public void registerWorldLastRenderer(IRenderer renderer)
+    public void unregisterWorldLastRenderer(IRenderer renderer)
     {
-        if (this.worldLastRenderers.contains(renderer) == false)
+        if (this.worldLastRenderers.unregister(renderer))
         {
-            this.worldLastRenderers.add(renderer);
+            this.worldLastTimings.remove(renderer);
         }
     }
 
+    /**
+     * Releases the cached overlay framebuffers of all the renderers.
+     * They will be re-created on the next frame as needed.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void clearOverlayRenderCache()
+    {
+        this.overlayRenderCache.clear();
+    }
+
     /**
      * NOT PUBLIC API - DO NOT CALL
      */
@@ -63,10 +121,27 @@ public class RenderEventHandler implements IRenderDispatcher
 
         if (this.overlayRenderers.isEmpty() == false)
         {
-            for (IRenderer renderer : this.overlayRenderers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IRenderer renderer : this.overlayRenderers.getHandlers())
             {
                 mc.getProfiler().push(renderer.getProfilerSectionSupplier());
-                renderer.onRenderGameOverlayPost(drawContext);
+                long startTime = timed ? System.nanoTime() : 0L;
+
+                if (renderer instanceof ICachedOverlayRenderer)
+                {
+                    this.overlayRenderCache.render((ICachedOverlayRenderer) renderer, drawContext, mc);
+                }
+                else
+                {
+                    renderer.onRenderGameOverlayPost(drawContext);
+                }
+
+                if (timed)
+                {
+                    this.overlayTimings.record(renderer, startTime);
+                }
+
                 mc.getProfiler().pop();
             }
         }
@@ -85,9 +160,17 @@ public class RenderEventHandler implements IRenderDispatcher
     {
         if (this.tooltipLastRenderers.isEmpty() == false)
         {
-            for (IRenderer renderer : this.tooltipLastRenderers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IRenderer renderer : this.tooltipLastRenderers.getHandlers())
             {
+                long startTime = timed ? System.nanoTime() : 0L;
                 renderer.onRenderTooltipLast(drawContext ,stack, x, y);
+
+                if (timed)
+                {
+                    this.tooltipLastTimings.record(renderer, startTime);
+                }
             }
         }
     }
@@ -108,10 +191,19 @@ public class RenderEventHandler implements IRenderDispatcher
                 fb.beginWrite(false);
             }
 
-            for (IRenderer renderer : this.worldLastRenderers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IRenderer renderer : this.worldLastRenderers.getHandlers())
             {
                 mc.getProfiler().push(renderer.getProfilerSectionSupplier());
+                long startTime = timed ? System.nanoTime() : 0L;
                 renderer.onRenderWorldLast(matrixStack, projMatrix);
+
+                if (timed)
+                {
+                    this.worldLastTimings.record(renderer, startTime);
+                }
+
                 mc.getProfiler().pop();
             }
 
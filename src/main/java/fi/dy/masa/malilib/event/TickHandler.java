@@ -1,7 +1,5 @@
 package fi.dy.masa.malilib.event;
 
-import java.util.ArrayList;
-import java.util.List;
 import net.minecraft.client.MinecraftClient;
 import fi.dy.masa.malilib.interfaces.IClientTickHandler;
 
@@ -9,7 +7,8 @@ public class TickHandler
 {
     private static final TickHandler INSTANCE = new TickHandler();
 
-    private final List<IClientTickHandler> clientTickHandlers = new ArrayList<>();
+    private final HandlerList<IClientTickHandler> clientTickHandlers = new HandlerList<>(new IClientTickHandler[0]);
+    private final HandlerTimings.Category clientTickTimings = HandlerTimings.getInstance().getCategory(HandlerTimings.CLIENT_TICK);
 
     public static TickHandler getInstance()
     {
@@ -18,9 +17,27 @@ public class TickHandler
 
     public void registerClientTickHandler(IClientTickHandler handler)
     {
-        if (this.clientTickHandlers.contains(handler) == false)
+        this.registerClientTickHandler(handler, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Registers a client tick handler with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * @param handler
+     * @param priority
+     */
+    public void registerClientTickHandler(IClientTickHandler handler, int priority)
+    {
+        this.clientTickTimings.add(handler);
+        this.clientTickHandlers.register(handler, priority);
+    }
+
+    public void unregisterClientTickHandler(IClientTickHandler handler)
+    {
+        if (this.clientTickHandlers.unregister(handler))
         {
-            this.clientTickHandlers.add(handler);
+            this.clientTickTimings.remove(handler);
         }
     }
 
@@ -31,9 +48,17 @@ public class TickHandler
     {
         if (this.clientTickHandlers.isEmpty() == false)
         {
-            for (IClientTickHandler handler : this.clientTickHandlers)
+            boolean timed = HandlerTimings.isEnabled();
+
+            for (IClientTickHandler handler : this.clientTickHandlers.getHandlers())
             {
+                long startTime = timed ? System.nanoTime() : 0L;
                 handler.onClientTick(mc);
+
+                if (timed)
+                {
+                    this.clientTickTimings.record(handler, startTime);
+                }
             }
         }
     }
@@ -1,10 +1,9 @@
 package fi.dy.masa.malilib.event;
 
-import java.util.ArrayList;
-import java.util.List;
 import javax.annotation.Nullable;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
+import fi.dy.masa.malilib.config.ConfigFileWriter;
 import fi.dy.masa.malilib.config.ConfigManager;
 import fi.dy.masa.malilib.interfaces.IWorldLoadListener;
 
@@ -12,8 +11,8 @@ public class WorldLoadHandler implements IWorldLoadManager
 {
     private static final WorldLoadHandler INSTANCE = new WorldLoadHandler();
 
-    private final List<IWorldLoadListener> worldLoadPreHandlers = new ArrayList<>();
-    private final List<IWorldLoadListener> worldLoadPostHandlers = new ArrayList<>();
+    private final HandlerList<IWorldLoadListener> worldLoadPreHandlers = new HandlerList<>(new IWorldLoadListener[0]);
+    private final HandlerList<IWorldLoadListener> worldLoadPostHandlers = new HandlerList<>(new IWorldLoadListener[0]);
 
     public static IWorldLoadManager getInstance()
     {
@@ -23,31 +22,37 @@ public class WorldLoadHandler implements IWorldLoadManager
     @Override
     public void registerWorldLoadPreHandler(IWorldLoadListener listener)
     {
-        if (this.worldLoadPreHandlers.contains(listener) == false)
-        {
-            this.worldLoadPreHandlers.add(listener);
-        }
+        this.registerWorldLoadPreHandler(listener, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerWorldLoadPreHandler(IWorldLoadListener listener, int priority)
+    {
+        this.worldLoadPreHandlers.register(listener, priority);
     }
 
     @Override
     public void unregisterWorldLoadPreHandler(IWorldLoadListener listener)
     {
-        this.worldLoadPreHandlers.remove(listener);
+        this.worldLoadPreHandlers.unregister(listener);
     }
 
     @Override
     public void registerWorldLoadPostHandler(IWorldLoadListener listener)
     {
-        if (this.worldLoadPostHandlers.contains(listener) == false)
-        {
-            this.worldLoadPostHandlers.add(listener);
-        }
+        this.registerWorldLoadPostHandler(listener, HandlerList.DEFAULT_PRIORITY);
+    }
+
+    @Override
+    public void registerWorldLoadPostHandler(IWorldLoadListener listener, int priority)
+    {
+        this.worldLoadPostHandlers.register(listener, priority);
     }
 
     @Override
     public void unregisterWorldLoadPostHandler(IWorldLoadListener listener)
     {
-        this.worldLoadPostHandlers.remove(listener);
+        this.worldLoadPostHandlers.unregister(listener);
     }
 
     /**
@@ -57,7 +62,7 @@ public class WorldLoadHandler implements IWorldLoadManager
     {
         if (this.worldLoadPreHandlers.isEmpty() == false)
         {
-            for (IWorldLoadListener listener : this.worldLoadPreHandlers)
+            for (IWorldLoadListener listener : this.worldLoadPreHandlers.getHandlers())
             {
                 listener.onWorldLoadPre(worldBefore, worldAfter, mc);
             }
@@ -73,18 +78,19 @@ public class WorldLoadHandler implements IWorldLoadManager
         if (worldBefore != null && worldAfter == null)
         {
             ((ConfigManager) ConfigManager.getInstance()).saveAllConfigs();
+            ConfigFileWriter.getInstance().flush();
         }
         // (Re-)Load all the configs from file when entering a world
         else if (worldBefore == null && worldAfter != null)
         {
+            // Any keybind changes get applied to the keybind map incrementally
             ((ConfigManager) ConfigManager.getInstance()).loadAllConfigs();
-            InputEventHandler.getKeybindManager().updateUsedKeys();
         }
 
         if (this.worldLoadPostHandlers.isEmpty() == false &&
             (worldBefore != null || worldAfter != null))
         {
-            for (IWorldLoadListener listener : this.worldLoadPostHandlers)
+            for (IWorldLoadListener listener : this.worldLoadPostHandlers.getHandlers())
             {
                 listener.onWorldLoadPost(worldBefore, worldAfter, mc);
             }
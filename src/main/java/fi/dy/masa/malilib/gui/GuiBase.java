@@ -23,6 +23,7 @@ import fi.dy.masa.malilib.gui.widgets.WidgetLabel;
 import fi.dy.masa.malilib.gui.wrappers.TextFieldWrapper;
 import fi.dy.masa.malilib.interfaces.IStringConsumer;
 import fi.dy.masa.malilib.render.MessageRenderer;
+import fi.dy.masa.malilib.render.QuadBatch2D;
 import fi.dy.masa.malilib.render.RenderUtils;
 import fi.dy.masa.malilib.util.KeyCodes;
 
@@ -165,19 +166,32 @@ public abstract class GuiBase extends Screen implements IMessageConsumer, IStrin
         // Use a custom DrawContext that doesn't always disable depth test when drawing...
         drawContext = new MalilibDrawContext(this.client, drawContext.getVertexConsumers());
 
-        this.drawScreenBackground(mouseX, mouseY);
-        this.drawTitle(drawContext, mouseX, mouseY, partialTicks);
+        // Batch the rectangles of all the widgets of the frame into as few draw calls as possible
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        batch.begin();
 
-        // Draw base widgets
-        this.drawWidgets(mouseX, mouseY, drawContext);
-        this.drawTextFields(mouseX, mouseY, drawContext);
-        this.drawButtons(mouseX, mouseY, partialTicks, drawContext);
+        try
+        {
+            this.drawScreenBackground(mouseX, mouseY);
+            this.drawTitle(drawContext, mouseX, mouseY, partialTicks);
+
+            // Draw base widgets
+            this.drawWidgets(mouseX, mouseY, drawContext);
+            this.drawTextFields(mouseX, mouseY, drawContext);
+            this.drawButtons(mouseX, mouseY, partialTicks, drawContext);
 
-        this.drawContents(drawContext, mouseX, mouseY, partialTicks);
+            // The custom contents may be drawn without going via the batch, so the widgets need to be drawn first
+            batch.flush();
+            this.drawContents(drawContext, mouseX, mouseY, partialTicks);
 
-        this.drawButtonHoverTexts(mouseX, mouseY, partialTicks, drawContext);
-        this.drawHoveredWidget(mouseX, mouseY, drawContext);
-        this.drawGuiMessages(drawContext);
+            this.drawButtonHoverTexts(mouseX, mouseY, partialTicks, drawContext);
+            this.drawHoveredWidget(mouseX, mouseY, drawContext);
+            this.drawGuiMessages(drawContext);
+        }
+        finally
+        {
+            batch.end();
+        }
     }
 
     @Override
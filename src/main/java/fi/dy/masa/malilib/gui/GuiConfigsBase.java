@@ -9,7 +9,6 @@ import net.minecraft.client.gui.screen.Screen;
 import fi.dy.masa.malilib.config.ConfigManager;
 import fi.dy.masa.malilib.config.IConfigBase;
 import fi.dy.masa.malilib.config.gui.ButtonPressDirtyListenerSimple;
-import fi.dy.masa.malilib.event.InputEventHandler;
 import fi.dy.masa.malilib.gui.GuiConfigsBase.ConfigOptionWrapper;
 import fi.dy.masa.malilib.gui.button.ConfigButtonKeybind;
 import fi.dy.masa.malilib.gui.interfaces.IConfigInfoProvider;
@@ -118,12 +117,8 @@ public abstract class GuiConfigsBase extends GuiListBase<ConfigOptionWrapper, Wi
 
     protected void onSettingsChanged()
     {
+        // Note: Keybind changes are applied to the keybind map incrementally, so they don't need a rebuild here
         ConfigManager.getInstance().onConfigsChanged(this.modId);
-
-        if (this.hotkeyChangeListeners.size() > 0)
-        {
-            InputEventHandler.getKeybindManager().updateUsedKeys();
-        }
     }
 
     @Override
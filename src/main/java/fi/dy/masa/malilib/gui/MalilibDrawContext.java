@@ -4,6 +4,8 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.render.VertexConsumerProvider.Immediate;
 
+import fi.dy.masa.malilib.render.QuadBatch2D;
+
 public class MalilibDrawContext extends DrawContext
 {
     public MalilibDrawContext(MinecraftClient client, Immediate vertexConsumers)
@@ -14,6 +16,10 @@ public class MalilibDrawContext extends DrawContext
     @Override
     public void draw()
     {
+        // The batched quads of the GUI have to be drawn before anything drawn via this context,
+        // which includes the text, the items and the scissor changes
+        QuadBatch2D.getInstance().flush();
+
         // Omit the disableDepthTest() call >_>
         this.getVertexConsumers().draw();
     }
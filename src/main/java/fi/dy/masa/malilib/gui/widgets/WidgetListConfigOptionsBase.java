@@ -3,6 +3,8 @@ package fi.dy.masa.malilib.gui.widgets;
 import java.util.ArrayList;
 import java.util.List;
 import net.minecraft.client.gui.screen.Screen;
+import fi.dy.masa.malilib.config.ConfigChangeBatch;
+import fi.dy.masa.malilib.config.ConfigManager;
 import fi.dy.masa.malilib.gui.GuiTextFieldGeneric;
 import fi.dy.masa.malilib.gui.wrappers.TextFieldWrapper;
 import fi.dy.masa.malilib.util.KeyCodes;
@@ -179,13 +181,17 @@ public abstract class WidgetListConfigOptionsBase<TYPE, WIDGET extends WidgetCon
 
     public void applyPendingModifications()
     {
-        for (WidgetConfigOptionBase<TYPE> widget : this.listWidgets)
+        // Deliver the change callbacks once, after all the pending values have been applied
+        try (ConfigChangeBatch batch = ConfigManager.getInstance().beginChangeBatch())
         {
-            if (widget.hasPendingModifications())
+            for (WidgetConfigOptionBase<TYPE> widget : this.listWidgets)
             {
-                widget.applyNewValueToConfig();
-                // Cache the modified status before scrolling etc. and thus re-creating the widgets
-                this.configsModified = true;
+                if (widget.hasPendingModifications())
+                {
+                    widget.applyNewValueToConfig();
+                    // Cache the modified status before scrolling etc. and thus re-creating the widgets
+                    this.configsModified = true;
+                }
             }
         }
     }
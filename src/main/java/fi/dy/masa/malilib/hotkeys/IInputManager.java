@@ -9,6 +9,19 @@ public interface IInputManager
      */
     void registerKeyboardInputHandler(IKeyboardInputHandler handler);
 
+    /**
+     * Registers a keyboard input handler with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param handler
+     * @param priority
+     */
+    default void registerKeyboardInputHandler(IKeyboardInputHandler handler, int priority)
+    {
+        this.registerKeyboardInputHandler(handler);
+    }
+
     /**
      * Un-registers a previously registered keyboard input handler
      * @param handler
@@ -23,6 +36,19 @@ public interface IInputManager
      */
     void registerMouseInputHandler(IMouseInputHandler handler);
 
+    /**
+     * Registers a mouse input handler with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param handler
+     * @param priority
+     */
+    default void registerMouseInputHandler(IMouseInputHandler handler, int priority)
+    {
+        this.registerMouseInputHandler(handler);
+    }
+
     /**
      * Un-registers a previously registered mouse input handler
      * @param handler
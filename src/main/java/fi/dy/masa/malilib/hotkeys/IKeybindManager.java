@@ -27,9 +27,24 @@ public interface IKeybindManager
      * Forces the keys -> keybinds map to be rebuilt, and causes
      * {@link IKeybindProvider#addKeysToMap(IKeybindManager)} to be called
      * for each registered IKeybindProvider.
+     * Changes to the keys of a single {@link KeybindMulti} are also applied to the map incrementally
+     * via {@link #onKeybindKeysChanged(IKeybind, int[], int[])}.
      */
     void updateUsedKeys();
 
+    /**
+     * Updates the entries of the given keybind in the map of keys -> keybinds,
+     * if the keybind has been added to the map. Called by the keybinds when their keys change.
+     * The default implementation just rebuilds the whole map via {@link #updateUsedKeys()}.
+     * @param keybind
+     * @param removedKeys the key codes that the keybind no longer uses
+     * @param addedKeys the key codes that the keybind now uses, but didn't before
+     */
+    default void onKeybindKeysChanged(IKeybind keybind, int[] removedKeys, int[] addedKeys)
+    {
+        this.updateUsedKeys();
+    }
+
     /**
      * Adds the provided IKeybind to the map of keys -> keybinds,
      * which is used in the input event handler to distribute the events/actions
@@ -0,0 +1,183 @@
+package fi.dy.masa.malilib.hotkeys;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * The key code -> keybinds index used by the input handler.
+ * Each keybind is compiled once into an {@link Entry} when it is added, and key changes
+ * only move that entry between the per-key buckets, so nothing needs to be compiled on the input path.
+ * The entries allow the input handler to skip calling {@link IKeybind#updateIsPressed()} for any keybind
+ * that is not currently active and which can't become active, because not all of its keys are being held.
+ * The held keys check is a bit mask comparison against the pressed keys bitset.
+ * The buckets are copy-on-write arrays, so the array returned for an input event is not
+ * affected by any keybind changes done while handling that event.
+ */
+public class KeybindMatcher
+{
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Int2ObjectOpenHashMap<Entry[]> entriesByKey = new Int2ObjectOpenHashMap<>();
+    private final Map<IKeybind, Entry> entries = new IdentityHashMap<>();
+
+    public KeybindMatcher()
+    {
+        this.entriesByKey.defaultReturnValue(NO_ENTRIES);
+    }
+
+    /**
+     * Returns the compiled entries for all the keybinds that use the given key.
+     * The returned array must not be modified.
+     * @param keyCode
+     * @return
+     */
+    public Entry[] getEntries(int keyCode)
+    {
+        return this.entriesByKey.get(keyCode);
+    }
+
+    public boolean isEmpty()
+    {
+        return this.entriesByKey.isEmpty();
+    }
+
+    /**
+     * Returns true if the given keybind has been added to this matcher
+     * @param keybind
+     * @return
+     */
+    public boolean contains(IKeybind keybind)
+    {
+        return this.entries.containsKey(keybind);
+    }
+
+    /**
+     * Adds the given keybind to the buckets of all of its current keys.
+     * Each keybind is only added once.
+     * @param keybind
+     */
+    public void add(IKeybind keybind)
+    {
+        if (this.entries.containsKey(keybind))
+        {
+            return;
+        }
+
+        Entry entry = new Entry(keybind);
+        List<Integer> keys = keybind.getKeys();
+
+        this.entries.put(keybind, entry);
+
+        for (int i = 0; i < keys.size(); ++i)
+        {
+            this.addToBucket(keys.get(i).intValue(), entry);
+        }
+    }
+
+    /**
+     * Moves the entry of the given keybind from the buckets of the removed keys
+     * to the buckets of the added keys. Does nothing if the keybind has not been added.
+     * @param keybind
+     * @param removedKeys
+     * @param addedKeys
+     * @return true if the keybind had been added to this matcher
+     */
+    public boolean updateKeys(IKeybind keybind, int[] removedKeys, int[] addedKeys)
+    {
+        Entry entry = this.entries.get(keybind);
+
+        if (entry == null)
+        {
+            return false;
+        }
+
+        for (int key : removedKeys)
+        {
+            this.removeFromBucket(key, entry);
+        }
+
+        for (int key : addedKeys)
+        {
+            this.addToBucket(key, entry);
+        }
+
+        return true;
+    }
+
+    private void addToBucket(int key, Entry entry)
+    {
+        Entry[] bucket = this.entriesByKey.get(key);
+
+        if (indexOf(bucket, entry) == -1)
+        {
+            Entry[] newBucket = new Entry[bucket.length + 1];
+            System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+            newBucket[bucket.length] = entry;
+            this.entriesByKey.put(key, newBucket);
+        }
+    }
+
+    private void removeFromBucket(int key, Entry entry)
+    {
+        Entry[] bucket = this.entriesByKey.get(key);
+        int index = indexOf(bucket, entry);
+
+        if (index != -1)
+        {
+            if (bucket.length == 1)
+            {
+                this.entriesByKey.remove(key);
+            }
+            else
+            {
+                Entry[] newBucket = new Entry[bucket.length - 1];
+                System.arraycopy(bucket, 0, newBucket, 0, index);
+                System.arraycopy(bucket, index + 1, newBucket, index, newBucket.length - index);
+                this.entriesByKey.put(key, newBucket);
+            }
+        }
+    }
+
+    private static int indexOf(Entry[] bucket, Entry entry)
+    {
+        for (int i = 0; i < bucket.length; ++i)
+        {
+            if (bucket[i] == entry)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public static class Entry
+    {
+        private final IKeybind keybind;
+        @Nullable private final KeybindMulti keybindMulti;
+
+        private Entry(IKeybind keybind)
+        {
+            this.keybind = keybind;
+            this.keybindMulti = keybind instanceof KeybindMulti ? (KeybindMulti) keybind : null;
+        }
+
+        public IKeybind getKeybind()
+        {
+            return this.keybind;
+        }
+
+        /**
+         * Returns true if the keybind's state could change from the current input state.
+         * Keybinds other than {@link KeybindMulti} can't be pre-checked, and always return true.
+         * @return
+         */
+        public boolean canChangeState()
+        {
+            return this.keybindMulti == null || this.keybindMulti.canChangeState();
+        }
+    }
+}
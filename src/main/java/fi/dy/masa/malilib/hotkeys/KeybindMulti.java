@@ -1,9 +1,8 @@
 package fi.dy.masa.malilib.hotkeys;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.lwjgl.glfw.GLFW;
@@ -12,6 +11,8 @@ import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
 import fi.dy.masa.malilib.MaLiLib;
 import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.config.ConfigManager;
+import fi.dy.masa.malilib.event.InputEventHandler;
 import fi.dy.masa.malilib.gui.Message;
 import fi.dy.masa.malilib.hotkeys.KeybindSettings.Context;
 import fi.dy.masa.malilib.util.GuiUtils;
@@ -21,12 +22,16 @@ import fi.dy.masa.malilib.util.KeyCodes;
 
 public class KeybindMulti implements IKeybind
 {
-    private static final ArrayList<Integer> PRESSED_KEYS = new ArrayList<>();
+    private static final PressedKeys PRESSED_KEYS = new PressedKeys();
+    private static final int[] NO_KEYS = new int[0];
     private static int triggeredCount;
 
     private final String defaultStorageString;
     private final KeybindSettings defaultSettings;
-    private List<Integer> keyCodes = new ArrayList<>(4);
+    private final List<Integer> keyCodes = new ArrayList<>(4);
+    private final List<Integer> keyCodesView = Collections.unmodifiableList(this.keyCodes);
+    private int[] keyCodeArray = NO_KEYS;
+    @Nullable private long[] keyMask;
     private KeybindSettings settings;
     private boolean pressed;
     private boolean pressedLast;
@@ -88,7 +93,9 @@ public class KeybindMulti implements IKeybind
     @Override
     public boolean updateIsPressed()
     {
-        if (this.keyCodes.isEmpty() ||
+        final int[] keyCodes = this.keyCodeArray;
+
+        if (keyCodes.length == 0 ||
             (this.settings.getContext() != KeybindSettings.Context.ANY &&
             ((this.settings.getContext() == KeybindSettings.Context.INGAME) != (GuiUtils.getCurrentScreen() == null))))
         {
@@ -100,18 +107,18 @@ public class KeybindMulti implements IKeybind
         boolean allowOutOfOrder = this.settings.isOrderSensitive() == false;
         boolean pressedLast = this.pressed;
         final int sizePressed = PRESSED_KEYS.size();
-        final int sizeRequired = this.keyCodes.size();
+        final int sizeRequired = keyCodes.length;
 
         if (sizePressed >= sizeRequired && (allowExtraKeys || sizePressed == sizeRequired))
         {
             int keyCodeIndex = 0;
-            this.pressed = PRESSED_KEYS.containsAll(this.keyCodes);
+            this.pressed = areAllKeysPressed(keyCodes);
 
             for (int i = 0; i < sizePressed; ++i)
             {
-                Integer keyCodeObj = PRESSED_KEYS.get(i);
+                int keyCode = PRESSED_KEYS.get(i);
 
-                if (this.keyCodes.get(keyCodeIndex).equals(keyCodeObj))
+                if (keyCodes[keyCodeIndex] == keyCode)
                 {
                     // Fully matched keybind
                     if (++keyCodeIndex >= sizeRequired)
@@ -120,11 +127,11 @@ public class KeybindMulti implements IKeybind
                     }
                 }
                 else if ((allowOutOfOrder == false && (keyCodeIndex > 0 || sizePressed == sizeRequired)) ||
-                         (this.keyCodes.contains(keyCodeObj) == false && allowExtraKeys == false))
+                         (allowExtraKeys == false && containsKey(keyCodes, keyCode) == false))
                 {
                     /*
                     System.out.printf("km fail: key: %s, ae: %s, aoo: %s, cont: %s, keys: %s, pressed: %s, triggeredCount: %d\n",
-                            keyCodeObj, allowExtraKeys, allowOutOfOrder, this.keyCodes.contains(keyCodeObj), this.keyCodes, pressedKeys, triggeredCount);
+                            keyCode, allowExtraKeys, allowOutOfOrder, containsKey(keyCodes, keyCode), this.keyCodes, getActiveKeysString(), triggeredCount);
                     */
                     this.pressed = false;
                     break;
@@ -156,6 +163,56 @@ public class KeybindMulti implements IKeybind
         return false;
     }
 
+    /**
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE!!!<br>
+     * Returns true if calling {@link #updateIsPressed()} could change the state of this keybind,
+     * ie. if it's currently active, or if all of its keys are currently being held.
+     */
+    public boolean canChangeState()
+    {
+        return this.pressed || this.keyMask == null || PRESSED_KEYS.containsAll(this.keyMask);
+    }
+
+    private static boolean areAllKeysPressed(int[] keyCodes)
+    {
+        for (int keyCode : keyCodes)
+        {
+            if (PRESSED_KEYS.contains(keyCode) == false)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean containsKey(int[] keyCodes, int keyCode)
+    {
+        for (int key : keyCodes)
+        {
+            if (key == keyCode)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void updateKeyCodeArray()
+    {
+        final int size = this.keyCodes.size();
+        int[] arr = new int[size];
+
+        for (int i = 0; i < size; ++i)
+        {
+            arr[i] = this.keyCodes.get(i).intValue();
+        }
+
+        this.keyCodeArray = arr;
+        this.keyMask = size > 0 ? PressedKeys.createMask(arr) : null;
+    }
+
     private boolean triggerKeyAction(boolean pressedLast)
     {
         boolean cancel = false;
@@ -172,7 +229,7 @@ public class KeybindMulti implements IKeybind
         }
         else if (pressedLast == false && this.heldTime == 0)
         {
-            if (this.keyCodes.contains(KeyCodes.KEY_F3))
+            if (containsKey(this.keyCodeArray, KeyCodes.KEY_F3))
             {
                 // Prevent the debug GUI from opening after the F3 key is released
                 ((IF3KeyStateSetter) MinecraftClient.getInstance().keyboard).setF3KeyState(true);
@@ -198,19 +255,84 @@ public class KeybindMulti implements IKeybind
 
     @Override
     public void clearKeys()
+    {
+        int[] oldKeys = this.keyCodeArray;
+
+        this.clearKeysInternal();
+        this.onKeysChanged(oldKeys);
+    }
+
+    private void clearKeysInternal()
     {
         this.keyCodes.clear();
+        this.keyCodeArray = NO_KEYS;
+        this.keyMask = null;
         this.pressed = false;
         this.heldTime = 0;
     }
 
     @Override
     public void addKey(int keyCode)
+    {
+        int[] oldKeys = this.keyCodeArray;
+
+        if (this.addKeyInternal(keyCode))
+        {
+            this.onKeysChanged(oldKeys);
+        }
+    }
+
+    private boolean addKeyInternal(int keyCode)
     {
         if (this.keyCodes.contains(keyCode) == false)
         {
             this.keyCodes.add(keyCode);
+            this.updateKeyCodeArray();
+            return true;
         }
+
+        return false;
+    }
+
+    /**
+     * Marks the owning config handler as dirty, and reports the added and removed keys
+     * to the keybind manager, so that it can update its key -> keybinds map without a full rebuild
+     */
+    private void onKeysChanged(int[] oldKeys)
+    {
+        int[] newKeys = this.keyCodeArray;
+
+        if (Arrays.equals(oldKeys, newKeys) == false)
+        {
+            ((ConfigManager) ConfigManager.getInstance()).onKeybindKeysChanged(this);
+        }
+
+        int[] removed = getMissingKeys(oldKeys, newKeys);
+        int[] added = getMissingKeys(newKeys, oldKeys);
+
+        if (removed.length > 0 || added.length > 0)
+        {
+            InputEventHandler.getKeybindManager().onKeybindKeysChanged(this, removed, added);
+        }
+    }
+
+    /**
+     * Returns the keys in <b>keys</b> that are not in <b>other</b>
+     */
+    private static int[] getMissingKeys(int[] keys, int[] other)
+    {
+        int[] missing = new int[keys.length];
+        int count = 0;
+
+        for (int key : keys)
+        {
+            if (containsKey(other, key) == false)
+            {
+                missing[count++] = key;
+            }
+        }
+
+        return count == keys.length ? missing : Arrays.copyOf(missing, count);
     }
 
     @Override
@@ -227,13 +349,23 @@ public class KeybindMulti implements IKeybind
     @Override
     public void removeKey(int keyCode)
     {
-        this.keyCodes.remove(keyCode);
+        int[] oldKeys = this.keyCodeArray;
+
+        if (this.keyCodes.remove(Integer.valueOf(keyCode)))
+        {
+            this.updateKeyCodeArray();
+            this.onKeysChanged(oldKeys);
+        }
     }
 
+    /**
+     * Returns a read-only view of the keys. The keys must be changed via the
+     * setter methods, so that the key array, the key mask and the keybind map stay in sync.
+     */
     @Override
     public List<Integer> getKeys()
     {
-        return this.keyCodes;
+        return this.keyCodesView;
     }
 
     @Override
@@ -308,7 +440,15 @@ public class KeybindMulti implements IKeybind
     @Override
     public void setValueFromString(String str)
     {
-        this.clearKeys();
+        int[] oldKeys = this.keyCodeArray;
+
+        this.setKeysFromString(str);
+        this.onKeysChanged(oldKeys);
+    }
+
+    private void setKeysFromString(String str)
+    {
+        this.clearKeysInternal();
         String[] keys = str.split(",");
 
         for (String keyName : keys)
@@ -321,7 +461,7 @@ public class KeybindMulti implements IKeybind
 
                 if (keyCode != KeyCodes.KEY_NONE)
                 {
-                    this.addKey(keyCode);
+                    this.addKeyInternal(keyCode);
                 }
             }
         }
@@ -330,7 +470,7 @@ public class KeybindMulti implements IKeybind
     @Override
     public boolean matches(int keyCode)
     {
-        return this.keyCodes.size() == 1 && this.keyCodes.get(0) == keyCode;
+        return this.keyCodeArray.length == 1 && this.keyCodeArray[0] == keyCode;
     }
 
     public static int getKeyCode(KeyBinding keybind)
@@ -412,7 +552,8 @@ public class KeybindMulti implements IKeybind
     public static KeybindMulti fromStorageString(String str, KeybindSettings settings)
     {
         KeybindMulti keybind = new KeybindMulti(str, settings);
-        keybind.setValueFromString(str);
+        // A new keybind can't be in the keybind map yet, so there is nothing to report
+        keybind.setKeysFromString(str);
         return keybind;
     }
 
@@ -442,24 +583,18 @@ public class KeybindMulti implements IKeybind
     {
         if (keyCode != -1)
         {
-            Integer valObj = keyCode;
             boolean state = action != GLFW.GLFW_RELEASE;
 
             if (state)
             {
-                if (PRESSED_KEYS.contains(valObj) == false)
+                if (PRESSED_KEYS.contains(keyCode) == false && isIgnoredKey(keyCode) == false)
                 {
-                    Collection<Integer> ignored = MaLiLibConfigs.Generic.IGNORED_KEYS.getKeybind().getKeys();
-
-                    if (ignored.size() == 0 || ignored.contains(valObj) == false)
-                    {
-                        PRESSED_KEYS.add(valObj);
-                    }
+                    PRESSED_KEYS.add(keyCode);
                 }
             }
             else
             {
-                PRESSED_KEYS.remove(valObj);
+                PRESSED_KEYS.remove(keyCode);
             }
         }
 
@@ -469,25 +604,33 @@ public class KeybindMulti implements IKeybind
         }
     }
 
+    private static boolean isIgnoredKey(int keyCode)
+    {
+        IKeybind ignored = MaLiLibConfigs.Generic.IGNORED_KEYS.getKeybind();
+
+        if (ignored instanceof KeybindMulti)
+        {
+            return containsKey(((KeybindMulti) ignored).keyCodeArray, keyCode);
+        }
+
+        return ignored.getKeys().contains(keyCode);
+    }
+
     /**
      * NOT PUBLIC API - DO NOT CALL FROM MOD CODE!!!
      */
     public static void reCheckPressedKeys()
     {
-        Iterator<Integer> iter = PRESSED_KEYS.iterator();
-
-        while (iter.hasNext())
+        for (int i = PRESSED_KEYS.size() - 1; i >= 0; --i)
         {
-            int keyCode = iter.next().intValue();
-
-            if (isKeyDown(keyCode) == false)
+            if (isKeyDown(PRESSED_KEYS.get(i)) == false)
             {
-                iter.remove();
+                PRESSED_KEYS.removeAt(i);
             }
         }
 
         // Clear the triggered count after all keys have been released
-        if (PRESSED_KEYS.size() == 0)
+        if (PRESSED_KEYS.isEmpty())
         {
             triggeredCount = 0;
         }
@@ -518,23 +661,21 @@ public class KeybindMulti implements IKeybind
         if (PRESSED_KEYS.isEmpty() == false)
         {
             StringBuilder sb = new StringBuilder(128);
-            int i = 0;
 
-            for (int key : PRESSED_KEYS)
+            for (int i = 0; i < PRESSED_KEYS.size(); ++i)
             {
                 if (i > 0)
                 {
                     sb.append(" + ");
                 }
 
+                int key = PRESSED_KEYS.get(i);
                 String name = getStorageStringForKeyCode(key);
 
                 if (name != null)
                 {
                     sb.append(String.format("%s (%d)", name, key));
                 }
-
-                i++;
             }
 
             return sb.toString();
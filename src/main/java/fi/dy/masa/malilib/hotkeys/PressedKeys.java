@@ -0,0 +1,192 @@
+package fi.dy.masa.malilib.hotkeys;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import org.lwjgl.glfw.GLFW;
+
+/**
+ * A primitive, insertion ordered set of the currently held key codes.
+ * Keyboard keys use their GLFW key codes, and mouse buttons use
+ * the button code offset by -100, same as in the keybind storage strings.
+ * The membership checks are done via a bitset, and the press order
+ * is kept in a plain int array, so none of the operations box or allocate
+ * (unless more keys are held at once than the initial capacity allows).
+ */
+public class PressedKeys
+{
+    private static final int KEY_CODE_OFFSET = 100;
+    private static final int BIT_COUNT = GLFW.GLFW_KEY_LAST + KEY_CODE_OFFSET + 1;
+
+    private final long[] bits = new long[(BIT_COUNT + 63) >>> 6];
+    private int[] keys = new int[16];
+    private int size;
+
+    /**
+     * Adds the given key code as the last pressed key, if it isn't already present.
+     * @param keyCode
+     * @return true if the key was added, false if it was already present
+     */
+    public boolean add(int keyCode)
+    {
+        if (this.contains(keyCode))
+        {
+            return false;
+        }
+
+        if (this.size >= this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+        }
+
+        this.keys[this.size++] = keyCode;
+        this.setBit(keyCode, true);
+
+        return true;
+    }
+
+    /**
+     * Removes the given key code, keeping the order of the remaining keys.
+     * @param keyCode
+     * @return true if the key was present
+     */
+    public boolean remove(int keyCode)
+    {
+        if (this.contains(keyCode) == false)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < this.size; ++i)
+        {
+            if (this.keys[i] == keyCode)
+            {
+                this.removeAt(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes the key at the given index of the press order.
+     * @param index
+     * @return the removed key code
+     */
+    public int removeAt(int index)
+    {
+        int keyCode = this.keys[index];
+        int moved = this.size - index - 1;
+
+        if (moved > 0)
+        {
+            System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+        }
+
+        --this.size;
+        this.setBit(keyCode, false);
+
+        return keyCode;
+    }
+
+    public boolean contains(int keyCode)
+    {
+        int index = keyCode + KEY_CODE_OFFSET;
+
+        if (index >= 0 && index < BIT_COUNT)
+        {
+            return (this.bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        // Out of range key codes are not tracked in the bitset, fall back to a scan
+        for (int i = 0; i < this.size; ++i)
+        {
+            if (this.keys[i] == keyCode)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if all the keys in the given mask are currently held.
+     * @param mask a mask created via {@link #createMask(int[])}
+     * @return
+     */
+    public boolean containsAll(long[] mask)
+    {
+        for (int i = 0; i < mask.length; ++i)
+        {
+            if ((this.bits[i] & mask[i]) != mask[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the key code at the given index of the press order
+     * @param index
+     * @return
+     */
+    public int get(int index)
+    {
+        return this.keys[index];
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Creates a bit mask of the given key codes, in the same layout as the pressed keys bitset.
+     * @param keyCodes
+     * @return the mask, or null if any of the key codes are outside of the tracked range
+     */
+    @Nullable
+    public static long[] createMask(int[] keyCodes)
+    {
+        long[] mask = new long[(BIT_COUNT + 63) >>> 6];
+
+        for (int keyCode : keyCodes)
+        {
+            int index = keyCode + KEY_CODE_OFFSET;
+
+            if (index < 0 || index >= BIT_COUNT)
+            {
+                return null;
+            }
+
+            mask[index >>> 6] |= (1L << index);
+        }
+
+        return mask;
+    }
+
+    private void setBit(int keyCode, boolean state)
+    {
+        int index = keyCode + KEY_CODE_OFFSET;
+
+        if (index >= 0 && index < BIT_COUNT)
+        {
+            if (state)
+            {
+                this.bits[index >>> 6] |= (1L << index);
+            }
+            else
+            {
+                this.bits[index >>> 6] &= ~(1L << index);
+            }
+        }
+    }
+}
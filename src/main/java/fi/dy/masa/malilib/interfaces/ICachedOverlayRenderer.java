@@ -0,0 +1,36 @@
+package fi.dy.masa.malilib.interfaces;
+
+/**
+ * An opt-in extension of {@link IRenderer} for game overlay renderers whose output
+ * mostly stays the same from frame to frame (for example HUD text).<br>
+ * The output of {@link IRenderer#onRenderGameOverlayPost(net.minecraft.client.gui.DrawContext)}
+ * is drawn into an offscreen framebuffer, which is then composited onto the screen every frame.
+ * The renderer is only called again when its invalidation key changes, when its refresh
+ * interval expires, or when the window size or the GUI scale changes.<br>
+ * <b>Note:</b> The cached output is composited using pre-multiplied alpha, so translucent
+ * areas that overlap each other within the same renderer may look slightly different
+ * compared to rendering them directly.
+ */
+public interface ICachedOverlayRenderer extends IRenderer
+{
+    /**
+     * Returns the maximum number of times per second that the overlay should be re-rendered,
+     * even if the invalidation key has not changed.
+     * A value of 0 or less means that the overlay is only re-rendered when the key changes.
+     */
+    default int getOverlayMaxRefreshRate()
+    {
+        return 20;
+    }
+
+    /**
+     * Returns a value that represents the current state of the rendered content.
+     * Whenever the returned value changes, the cached overlay is re-rendered
+     * on the next frame, regardless of the refresh rate.
+     * This method gets called every frame, so it should be cheap.
+     */
+    default long getOverlayInvalidationKey()
+    {
+        return 0L;
+    }
+}
@@ -4,11 +4,26 @@ public interface IRenderDispatcher
 {
     /**
      * Registers a renderer which will have its {@link IRenderer.onRenderGameOverlayPost}
-     * method called after the vanilla rendering is done
+     * method called after the vanilla rendering is done.
+     * If the renderer implements {@link ICachedOverlayRenderer}, then its output
+     * is cached in an offscreen framebuffer and only re-rendered when needed.
      * @param renderer
      */
     void registerGameOverlayRenderer(IRenderer renderer);
 
+    /**
+     * Registers a game overlay renderer with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param renderer
+     * @param priority
+     */
+    default void registerGameOverlayRenderer(IRenderer renderer, int priority)
+    {
+        this.registerGameOverlayRenderer(renderer);
+    }
+
     /**
      * Registers a renderer which will have its {@link IRenderer.onRenderTooltipLast}
      * method called after the vanilla tooltip text has been rendered.
@@ -16,10 +31,66 @@ public interface IRenderDispatcher
      */
     void registerTooltipLastRenderer(IRenderer renderer);
 
+    /**
+     * Registers a tooltip renderer with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param renderer
+     * @param priority
+     */
+    default void registerTooltipLastRenderer(IRenderer renderer, int priority)
+    {
+        this.registerTooltipLastRenderer(renderer);
+    }
+
     /**
      * Registers a renderer which will have its {@link IRenderer.onRenderWorldLast}
      * method called after the vanilla rendering is done
      * @param renderer
      */
     void registerWorldLastRenderer(IRenderer renderer);
+
+    /**
+     * Registers a world last renderer with the given priority.
+     * Handlers with a higher priority are called first, and handlers
+     * with the same priority are called in their registration order.
+     * The default implementation ignores the priority.
+     * @param renderer
+     * @param priority
+     */
+    default void registerWorldLastRenderer(IRenderer renderer, int priority)
+    {
+        this.registerWorldLastRenderer(renderer);
+    }
+
+    /**
+     * Un-registers a previously registered game overlay renderer.
+     * This is safe to call from within the renderer itself.
+     * The default implementation does nothing.
+     * @param renderer
+     */
+    default void unregisterGameOverlayRenderer(IRenderer renderer)
+    {
+    }
+
+    /**
+     * Un-registers a previously registered tooltip renderer.
+     * This is safe to call from within the renderer itself.
+     * The default implementation does nothing.
+     * @param renderer
+     */
+    default void unregisterTooltipLastRenderer(IRenderer renderer)
+    {
+    }
+
+    /**
+     * Un-registers a previously registered world last renderer.
+     * This is safe to call from within the renderer itself.
+     * The default implementation does nothing.
+     * @param renderer
+     */
+    default void unregisterWorldLastRenderer(IRenderer renderer)
+    {
+    }
 }
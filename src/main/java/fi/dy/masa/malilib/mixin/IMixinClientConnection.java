@@ -0,0 +1,13 @@
+package fi.dy.masa.malilib.mixin;
+
+import io.netty.channel.Channel;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+import net.minecraft.network.ClientConnection;
+
+@Mixin(ClientConnection.class)
+public interface IMixinClientConnection
+{
+    @Accessor("channel")
+    Channel malilib_getChannel();
+}
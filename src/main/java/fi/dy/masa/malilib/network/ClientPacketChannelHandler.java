@@ -1,15 +1,38 @@
 package fi.dy.masa.malilib.network;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import com.google.common.collect.ArrayListMultimap;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking.PlayChannelHandler;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
 
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.event.HandlerList;
+
+/**
+ * Registers one network receiver per channel, no matter how many handlers are registered for it.
+ * A split payload is reassembled only once per channel, and then the handlers
+ * share one read-only view of the payload buffer, except for the handlers that need a writable copy
+ * (see {@link IPluginChannelHandler#needsWritablePayload()}).<br>
+ * Handlers that return true from {@link IPluginChannelHandler#useCustomReceiver()}
+ * get the raw packets passed to their own receiver instead, like with a stand-alone registration.
+ */
 public class ClientPacketChannelHandler implements IClientPacketChannelHandler
 {
     private static final ClientPacketChannelHandler INSTANCE = new ClientPacketChannelHandler();
 
     private final ArrayListMultimap<Identifier, IPluginChannelHandler> handlers = ArrayListMultimap.create();
+    private final Map<Identifier, HandlerList<IPluginChannelHandler>> receivers = new ConcurrentHashMap<>();
+    private final Map<IPluginChannelHandler, PlayChannelHandler> customReceivers = new ConcurrentHashMap<>();
 
     public static IClientPacketChannelHandler getInstance()
     {
@@ -21,7 +44,7 @@ public class ClientPacketChannelHandler implements IClientPacketChannelHandler
     }
 
     @Override
-    public void registerClientChannelHandler(IPluginChannelHandler handler)
+    public synchronized void registerClientChannelHandler(IPluginChannelHandler handler)
     {
         Identifier channel = handler.getChannel();
 
@@ -31,19 +54,218 @@ public class ClientPacketChannelHandler implements IClientPacketChannelHandler
 
             if (handler.registerToServer())
             {
-                ClientPlayNetworking.registerGlobalReceiver(channel, handler.getClientPacketHandler());
+                HandlerList<IPluginChannelHandler> list = this.receivers.get(channel);
+
+                if (list == null)
+                {
+                    list = new HandlerList<>(new IPluginChannelHandler[0]);
+                    this.receivers.put(channel, list);
+                    ClientPlayNetworking.registerGlobalReceiver(channel, (mc, net, buf, responder) -> this.onPayloadReceived(channel, mc, net, buf, responder));
+                }
+
+                if (handler.useCustomReceiver())
+                {
+                    this.customReceivers.put(handler, handler.getClientPacketHandler());
+                }
+
+                list.register(handler);
+                warnIfSplitterSessionsConflict(channel, list.getHandlers());
             }
         }
     }
 
     @Override
-    public void unregisterClientChannelHandler(IPluginChannelHandler handler)
+    public synchronized void unregisterClientChannelHandler(IPluginChannelHandler handler)
     {
         Identifier channel = handler.getChannel();
 
         if (this.handlers.remove(channel, handler) && handler.registerToServer())
         {
-            ClientPlayNetworking.unregisterGlobalReceiver(channel);
+            HandlerList<IPluginChannelHandler> list = this.receivers.get(channel);
+
+            this.customReceivers.remove(handler);
+
+            if (list != null)
+            {
+                list.unregister(handler);
+
+                if (list.isEmpty())
+                {
+                    this.receivers.remove(channel);
+                    ClientPlayNetworking.unregisterGlobalReceiver(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called on the network thread
+     */
+    private void onPayloadReceived(Identifier channel, MinecraftClient mc, ClientPlayNetworkHandler netHandler,
+                                   PacketByteBuf buf, PacketSender responder)
+    {
+        HandlerList<IPluginChannelHandler> list = this.receivers.get(channel);
+
+        if (list == null)
+        {
+            return;
+        }
+
+        NetworkMetrics.ChannelMetrics metrics = NetworkMetrics.getInstance().getChannel(channel);
+        IPluginChannelHandler[] handlers = list.getHandlers();
+        PacketByteBuf rawPayload = null;
+
+        metrics.onPacketReceived(buf.readableBytes());
+        boolean useSplitter = false;
+        boolean ordered = false;
+
+        for (IPluginChannelHandler handler : handlers)
+        {
+            ordered |= handler instanceof IPluginChannelDecodingHandler<?>;
+        }
+
+        // The handlers not using the packet splitter get the raw payload
+        for (IPluginChannelHandler handler : handlers)
+        {
+            PlayChannelHandler customReceiver = this.customReceivers.get(handler);
+
+            if (customReceiver != null)
+            {
+                // Each custom receiver reads the packet via its own reader index
+                customReceiver.receive(mc, netHandler, new PacketByteBuf(buf.duplicate()), responder);
+            }
+            else if (handler.usePacketSplitter())
+            {
+                useSplitter = true;
+            }
+            else
+            {
+                if (rawPayload == null)
+                {
+                    rawPayload = new PacketByteBuf(buf.retainedSlice().asReadOnly());
+                    metrics.onPayloadReceived();
+                }
+
+                dispatch(netHandler, handler, rawPayload, metrics, ordered);
+            }
+        }
+
+        if (rawPayload != null)
+        {
+            rawPayload.release();
+        }
+
+        // One packet can carry the end of one payload and any number of coalesced payloads after it
+        while (useSplitter && buf.isReadable())
+        {
+            PacketByteBuf fullPayload = PacketSplitter.receive(netHandler, channel, buf);
+
+            if (fullPayload != null)
+            {
+                PacketByteBuf sharedPayload = new PacketByteBuf(fullPayload.asReadOnly());
+                metrics.onPayloadReceived();
+
+                for (IPluginChannelHandler handler : handlers)
+                {
+                    if (handler.usePacketSplitter() && this.customReceivers.containsKey(handler) == false)
+                    {
+                        dispatch(netHandler, handler, sharedPayload, metrics, ordered);
+                    }
+                }
+
+                fullPayload.release();
+            }
+        }
+    }
+
+    /**
+     * The split packets of one channel can only be reassembled by one receiver
+     */
+    private void warnIfSplitterSessionsConflict(Identifier channel, IPluginChannelHandler[] handlers)
+    {
+        int splitterReceivers = 0;
+        boolean sharedSplitter = false;
+
+        for (IPluginChannelHandler handler : handlers)
+        {
+            if (handler.usePacketSplitter())
+            {
+                if (this.customReceivers.containsKey(handler))
+                {
+                    ++splitterReceivers;
+                }
+                else if (sharedSplitter == false)
+                {
+                    sharedSplitter = true;
+                    ++splitterReceivers;
+                }
+            }
+        }
+
+        if (splitterReceivers > 1)
+        {
+            MaLiLib.logger.warn("Multiple handlers on channel '{}' reassemble the split packets via their own receiver, " +
+                                "which will not work correctly", channel);
+        }
+    }
+
+    /**
+     * Hands the shared read-only payload to the handler. Each handler gets its own duplicate
+     * of the view (with its own reader index, but without copying the data),
+     * which is released once the handler is done with it. Only the handlers
+     * that need a writable payload get their own copy, which they own and can keep.<br>
+     * If the channel has any decoding handlers, then the other handlers also go through
+     * the {@link PayloadDecodeQueue}, so that all the handlers of the channel see the payloads in the same order.
+     */
+    private static void dispatch(ClientPlayNetworkHandler netHandler, IPluginChannelHandler handler, PacketByteBuf payload,
+                                 NetworkMetrics.ChannelMetrics metrics, boolean ordered)
+    {
+        if (handler instanceof IPluginChannelDecodingHandler<?> decodingHandler)
+        {
+            PayloadDecodeQueue.getInstance().submit(netHandler, decodingHandler, new PacketByteBuf(payload.retainedDuplicate()));
+            return;
+        }
+
+        long queueTime = System.nanoTime();
+
+        if (handler.needsWritablePayload())
+        {
+            PacketByteBuf copy = new PacketByteBuf(Unpooled.copiedBuffer(payload));
+
+            schedule(netHandler, handler.getChannel(), ordered, () -> {
+                metrics.recordApplyLatency(System.nanoTime() - queueTime);
+                handler.onPacketReceived(copy);
+            }, null);
+
+            return;
+        }
+
+        PacketByteBuf view = new PacketByteBuf(payload.retainedDuplicate());
+
+        schedule(netHandler, handler.getChannel(), ordered, () -> {
+            metrics.recordApplyLatency(System.nanoTime() - queueTime);
+
+            try
+            {
+                handler.onPacketReceived(view);
+            }
+            finally
+            {
+                view.release();
+            }
+        }, view);
+    }
+
+    private static void schedule(ClientPlayNetworkHandler netHandler, Identifier channel, boolean ordered,
+                                 Runnable task, @Nullable ReferenceCounted payload)
+    {
+        if (ordered)
+        {
+            PayloadDecodeQueue.getInstance().submit(netHandler, channel, task, payload);
+        }
+        else
+        {
+            MinecraftClient.getInstance().execute(task);
         }
     }
 }
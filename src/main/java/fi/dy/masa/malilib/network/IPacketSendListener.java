@@ -0,0 +1,37 @@
+package fi.dy.masa.malilib.network;
+
+import net.minecraft.util.Identifier;
+
+/**
+ * Gets notified about the progress of a payload queued in the {@link PacketSendQueue}.
+ * All the methods are called on the client thread.
+ */
+public interface IPacketSendListener
+{
+    /**
+     * Called after each sent chunk of the payload
+     * @param channel
+     * @param sentBytes the number of bytes sent so far, including the length prefix
+     * @param totalBytes the total number of bytes to send, including the length prefix
+     */
+    default void onProgress(Identifier channel, long sentBytes, long totalBytes)
+    {
+    }
+
+    /**
+     * Called once all the data has been sent
+     * @param channel
+     */
+    default void onComplete(Identifier channel)
+    {
+    }
+
+    /**
+     * Called if the payload was dropped before it was fully sent,
+     * for example because of a disconnect
+     * @param channel
+     */
+    default void onAborted(Identifier channel)
+    {
+    }
+}
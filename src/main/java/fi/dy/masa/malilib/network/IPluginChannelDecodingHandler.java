@@ -0,0 +1,68 @@
+package fi.dy.masa.malilib.network;
+
+import javax.annotation.Nullable;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking.PlayChannelHandler;
+
+import net.minecraft.network.PacketByteBuf;
+
+/**
+ * A plugin channel handler that handles the received payloads in two stages.
+ * First the payload is decoded into an object by {@link #decode(PacketByteBuf)}
+ * on a worker thread, and then the decoded object is applied by {@link #apply(Object)}
+ * on the client thread. This keeps any heavy deserialization off the client thread.<br>
+ * The payloads of a channel are decoded and applied in the order they were received.
+ * @param <T> the type of the decoded payload
+ */
+public interface IPluginChannelDecodingHandler<T> extends IPluginChannelHandler
+{
+    @Override
+    default PlayChannelHandler getClientPacketHandler()
+    {
+        if (this.usePacketSplitter())
+        {
+            return (mc, net, buf, responder) -> {
+                while (buf.isReadable())
+                {
+                    PacketByteBuf fullBuf = PacketSplitter.receive(net, this.getChannel(), buf);
+
+                    if (fullBuf != null)
+                    {
+                        PayloadDecodeQueue.getInstance().submit(net, this, fullBuf);
+                    }
+                }
+            };
+        }
+
+        return (mc, net, buf, responder) -> PayloadDecodeQueue.getInstance().submit(net, this, new PacketByteBuf(buf.readRetainedSlice(buf.readableBytes())));
+    }
+
+    /**
+     * Decodes the received payload. This is called on a worker thread,
+     * so it must not access the world or any other client state.
+     * The buffer is released after this method returns.
+     * @param buf
+     * @return the decoded payload, or null to skip the apply stage
+     */
+    @Nullable
+    T decode(PacketByteBuf buf);
+
+    /**
+     * Applies the decoded payload. This is called on the client thread.
+     * @param data
+     */
+    void apply(T data);
+
+    /**
+     * Decodes and applies the payload directly on the current thread
+     */
+    @Override
+    default void onPacketReceived(PacketByteBuf buf)
+    {
+        T data = this.decode(buf);
+
+        if (data != null)
+        {
+            this.apply(data);
+        }
+    }
+}
@@ -11,6 +11,12 @@ public interface IPluginChannelHandler
 {
     Identifier getChannel();
 
+    /**
+     * Returns the network receiver for this handler.<br>
+     * <b>Note:</b> {@link ClientPacketChannelHandler} uses a single shared receiver per channel,
+     * and only calls this if {@link #useCustomReceiver()} returns true, in which case
+     * the handler also needs to take care of the split packets on its own.
+     */
     default PlayChannelHandler getClientPacketHandler()
     {
         if (this.usePacketSplitter())
@@ -23,16 +29,70 @@ public interface IPluginChannelHandler
 
     default void handleViaPacketSplitter(ClientPlayPacketListener netHandler, PacketByteBuf buf)
     {
-        PacketByteBuf fullBuf = PacketSplitter.receive(netHandler, this.getChannel(), buf);
-
-        if (fullBuf != null)
+        while (buf.isReadable())
         {
-            MinecraftClient.getInstance().execute(() -> this.onPacketReceived(fullBuf));
+            PacketByteBuf fullBuf = PacketSplitter.receive(netHandler, this.getChannel(), buf);
+
+            if (fullBuf == null)
+            {
+                continue;
+            }
+
+            if (this.needsWritablePayload())
+            {
+                PacketByteBuf copy = PacketSplitter.readPayload(fullBuf);
+                fullBuf.release();
+                MinecraftClient.getInstance().execute(() -> this.onPacketReceived(copy));
+            }
+            else
+            {
+                PacketByteBuf view = new PacketByteBuf(fullBuf.asReadOnly());
+
+                MinecraftClient.getInstance().execute(() -> {
+                    try
+                    {
+                        this.onPacketReceived(view);
+                    }
+                    finally
+                    {
+                        view.release();
+                    }
+                });
+            }
         }
     }
 
+    /**
+     * Called on the client thread with the received payload.
+     * By default the buffer is a read-only view of the payload, which is shared with the other
+     * handlers of the channel without copying. The view is released after this method returns,
+     * so it must be {@link PacketByteBuf#retain()}ed if it needs to be kept around longer.<br>
+     * If {@link #needsWritablePayload()} returns true, then the buffer is instead
+     * a copy of the payload owned by this handler, which it can modify and keep around freely.
+     * @param buf
+     */
     void onPacketReceived(PacketByteBuf buf);
 
+    /**
+     * Returns true if this handler needs a writable payload buffer that it owns.
+     * The payload is then copied for this handler.
+     */
+    default boolean needsWritablePayload()
+    {
+        return false;
+    }
+
+    /**
+     * Returns true if this handler provides its own network receiver via {@link #getClientPacketHandler()},
+     * or its own split packet handling via {@link #handleViaPacketSplitter(ClientPlayPacketListener, PacketByteBuf)}.
+     * The shared receiver of {@link ClientPacketChannelHandler} then passes the raw packets
+     * to that receiver, like with a stand-alone registration.
+     */
+    default boolean useCustomReceiver()
+    {
+        return false;
+    }
+
     default boolean usePacketSplitter()
     {
         return true;
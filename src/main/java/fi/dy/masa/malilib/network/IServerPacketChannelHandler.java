@@ -0,0 +1,8 @@
+package fi.dy.masa.malilib.network;
+
+public interface IServerPacketChannelHandler
+{
+    void registerServerChannelHandler(IServerPluginChannelHandler handler);
+
+    void unregisterServerChannelHandler(IServerPluginChannelHandler handler);
+}
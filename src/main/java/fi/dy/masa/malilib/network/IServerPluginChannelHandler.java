@@ -0,0 +1,30 @@
+package fi.dy.masa.malilib.network;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+/**
+ * The server side counterpart of {@link IPluginChannelHandler}, for receiving
+ * the payloads that clients send via {@link PacketSplitter}.
+ * Registered via {@link ServerPacketChannelHandler}.
+ */
+public interface IServerPluginChannelHandler
+{
+    Identifier getChannel();
+
+    /**
+     * Called on the server thread with the received payload.
+     * The buffer is a copy of the payload owned by this handler, and it can be kept around freely.
+     * @param server
+     * @param player the player who sent the payload
+     * @param buf
+     */
+    void onPacketReceived(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf);
+
+    default boolean usePacketSplitter()
+    {
+        return true;
+    }
+}
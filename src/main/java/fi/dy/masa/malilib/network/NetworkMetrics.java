@@ -0,0 +1,163 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.minecraft.util.Identifier;
+
+import fi.dy.masa.malilib.util.TimingHistogram;
+
+/**
+ * Per-channel traffic counters and timings for the plugin channel handling.
+ * The client side and the (integrated) server side traffic are counted in separate instances,
+ * see {@link #getInstance()} and {@link #getServerInstance()}, so that in single player
+ * and on LAN the same payload isn't counted twice.<br>
+ * "Packets" are the individual custom payload packets (so the split chunks),
+ * while "payloads" are the full reassembled payloads.
+ * The counters can be updated from any thread.
+ */
+public class NetworkMetrics
+{
+    private static final NetworkMetrics INSTANCE = new NetworkMetrics();
+    private static final NetworkMetrics SERVER_INSTANCE = new NetworkMetrics();
+
+    private final Map<Identifier, ChannelMetrics> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metrics of the client side traffic
+     */
+    public static NetworkMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the metrics of the (integrated) server side traffic
+     */
+    public static NetworkMetrics getServerInstance()
+    {
+        return SERVER_INSTANCE;
+    }
+
+    public ChannelMetrics getChannel(Identifier channel)
+    {
+        return this.channels.computeIfAbsent(channel, ChannelMetrics::new);
+    }
+
+    public List<ChannelMetrics> getChannels()
+    {
+        List<ChannelMetrics> list = new ArrayList<>(this.channels.values());
+        list.sort((c1, c2) -> c1.getChannel().toString().compareTo(c2.getChannel().toString()));
+        return list;
+    }
+
+    public void clear()
+    {
+        this.channels.clear();
+    }
+
+    public static class ChannelMetrics
+    {
+        private final Identifier channel;
+        private final LongAdder packetsIn = new LongAdder();
+        private final LongAdder packetsOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder payloadsIn = new LongAdder();
+        private final LongAdder payloadsOut = new LongAdder();
+        private final TimingHistogram reassemblyTime = new TimingHistogram();
+        private final TimingHistogram applyLatency = new TimingHistogram();
+
+        private ChannelMetrics(Identifier channel)
+        {
+            this.channel = channel;
+        }
+
+        public Identifier getChannel()
+        {
+            return this.channel;
+        }
+
+        public void onPacketReceived(int bytes)
+        {
+            this.packetsIn.increment();
+            this.bytesIn.add(bytes);
+        }
+
+        public void onPacketSent(int bytes)
+        {
+            this.packetsOut.increment();
+            this.bytesOut.add(bytes);
+        }
+
+        public void onPayloadReceived()
+        {
+            this.payloadsIn.increment();
+        }
+
+        public void onPayloadSent()
+        {
+            this.payloadsOut.increment();
+        }
+
+        /**
+         * Records the time between receiving the first and the last chunk of a split payload
+         */
+        public void recordReassemblyTime(long nanos)
+        {
+            this.reassemblyTime.addSample(nanos);
+        }
+
+        /**
+         * Records the time between queuing a received payload for the client thread
+         * and the client thread starting to apply it
+         */
+        public void recordApplyLatency(long nanos)
+        {
+            this.applyLatency.addSample(nanos);
+        }
+
+        public long getPacketsIn()
+        {
+            return this.packetsIn.sum();
+        }
+
+        public long getPacketsOut()
+        {
+            return this.packetsOut.sum();
+        }
+
+        public long getBytesIn()
+        {
+            return this.bytesIn.sum();
+        }
+
+        public long getBytesOut()
+        {
+            return this.bytesOut.sum();
+        }
+
+        public long getPayloadsIn()
+        {
+            return this.payloadsIn.sum();
+        }
+
+        public long getPayloadsOut()
+        {
+            return this.payloadsOut.sum();
+        }
+
+        public TimingHistogram getReassemblyTime()
+        {
+            return this.reassemblyTime;
+        }
+
+        public TimingHistogram getApplyLatency()
+        {
+            return this.applyLatency;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.client.gui.DrawContext;
+
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.config.HudAlignment;
+import fi.dy.masa.malilib.interfaces.IRenderer;
+import fi.dy.masa.malilib.render.RenderUtils;
+
+/**
+ * A debug overlay showing the {@link NetworkMetrics} of each plugin channel.
+ * The (integrated) server side channels are listed after the client side channels.
+ * Enabled via {@link MaLiLibConfigs.Debug#NETWORK_METRICS_OVERLAY}.
+ * The text is only rebuilt once per second, which is also the period of the shown transfer rates.
+ */
+public class NetworkMetricsRenderer implements IRenderer
+{
+    private static final NetworkMetricsRenderer INSTANCE = new NetworkMetricsRenderer();
+    private static final long UPDATE_INTERVAL = 1000000000L; // 1 second
+
+    private final Map<NetworkMetrics.ChannelMetrics, long[]> previousTotals = new HashMap<>();
+    private final List<String> lines = new ArrayList<>();
+    private long lastUpdateTime;
+
+    public static NetworkMetricsRenderer getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private NetworkMetricsRenderer()
+    {
+    }
+
+    @Override
+    public void onRenderGameOverlayPost(DrawContext drawContext)
+    {
+        if (MaLiLibConfigs.Debug.NETWORK_METRICS_OVERLAY.getBooleanValue() == false)
+        {
+            // Reset the rate baseline, so that re-enabling the overlay doesn't show
+            // the traffic accumulated while it was disabled as the current rate
+            if (this.lastUpdateTime != 0)
+            {
+                this.lastUpdateTime = 0;
+                this.previousTotals.clear();
+                this.lines.clear();
+            }
+
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (this.lastUpdateTime == 0 || now - this.lastUpdateTime >= UPDATE_INTERVAL)
+        {
+            this.updateLines((double) (now - this.lastUpdateTime) / UPDATE_INTERVAL);
+            this.lastUpdateTime = now;
+        }
+
+        if (this.lines.isEmpty() == false)
+        {
+            RenderUtils.renderText(4, 4, 1.0, 0xFFE0E0E0, 0xA0303030, HudAlignment.TOP_RIGHT, true, true, this.lines, drawContext);
+        }
+    }
+
+    private void updateLines(double seconds)
+    {
+        this.lines.clear();
+        this.addLines(NetworkMetrics.getInstance(), "", seconds);
+        this.addLines(NetworkMetrics.getServerInstance(), "server: ", seconds);
+    }
+
+    private void addLines(NetworkMetrics networkMetrics, String prefix, double seconds)
+    {
+        for (NetworkMetrics.ChannelMetrics metrics : networkMetrics.getChannels())
+        {
+            long bytesIn = metrics.getBytesIn();
+            long bytesOut = metrics.getBytesOut();
+            long[] previous = this.previousTotals.get(metrics);
+            long rateIn = previous != null && seconds > 0 ? (long) ((bytesIn - previous[0]) / seconds) : 0;
+            long rateOut = previous != null && seconds > 0 ? (long) ((bytesOut - previous[1]) / seconds) : 0;
+            long[] reassembly = metrics.getReassemblyTime().getPercentiles(0.5, 0.95);
+            long[] latency = metrics.getApplyLatency().getPercentiles(0.5, 0.95);
+
+            this.previousTotals.put(metrics, new long[] { bytesIn, bytesOut });
+
+            this.lines.add(prefix + metrics.getChannel().toString());
+            this.lines.add(String.format("  in: %d pkt / %d payloads, %s (%s/s)",
+                                         metrics.getPacketsIn(), metrics.getPayloadsIn(),
+                                         formatBytes(bytesIn), formatBytes(rateIn)));
+            this.lines.add(String.format("  out: %d pkt / %d payloads, %s (%s/s)",
+                                         metrics.getPacketsOut(), metrics.getPayloadsOut(),
+                                         formatBytes(bytesOut), formatBytes(rateOut)));
+            this.lines.add(String.format("  reassembly p50/p95: %s / %s ms",
+                                         formatMillis(reassembly[0]), formatMillis(reassembly[1])));
+            this.lines.add(String.format("  apply latency p50/p95: %s / %s ms",
+                                         formatMillis(latency[0]), formatMillis(latency[1])));
+        }
+    }
+
+    private static String formatBytes(long bytes)
+    {
+        if (bytes < 1024L)
+        {
+            return bytes + " B";
+        }
+        else if (bytes < 1048576L)
+        {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+
+        return String.format("%.1f MiB", bytes / 1048576.0);
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,375 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.interfaces.IClientTickHandler;
+
+/**
+ * Sends the client-to-server plugin channel payloads in the {@link PacketSplitter} format,
+ * spread over the game ticks. Each channel has its own queue, and on each tick the channels take turns
+ * sending one chunk at a time, until the {@link MaLiLibConfigs.Generic#PACKET_SEND_BYTES_PER_TICK}
+ * budget is used up. This way a large upload on one channel doesn't starve the other channels
+ * or the vanilla packets.<br>
+ * Coalescing (packing multiple small queued payloads into one chunk) can be enabled per channel,
+ * but only for channels whose receiving side reads the length-prefixed payloads
+ * in a loop, like {@link ServerPacketChannelHandler} does.<br>
+ * If compression has been enabled for the channel via {@link PayloadCompression},
+ * then the payloads are compressed when they are queued.<br>
+ * The {@link IPacketSendListener} callbacks are called after the queue lock has been released,
+ * so the listeners can queue more payloads or query the queue.
+ */
+public class PacketSendQueue implements IClientTickHandler
+{
+    private static final PacketSendQueue INSTANCE = new PacketSendQueue();
+
+    private final Map<Identifier, ArrayDeque<Transfer>> channelQueues = new LinkedHashMap<>();
+    private final Set<Identifier> coalescingChannels = new HashSet<>();
+    private int roundRobinStart;
+
+    public static PacketSendQueue getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private PacketSendQueue()
+    {
+    }
+
+    /**
+     * Queues the payload to be sent to the server. Takes ownership of the packet buffer,
+     * which is released once it has been sent or dropped.
+     * @param listener an optional listener for the send progress
+     * @return the queued transfer, which can be used to poll the progress
+     */
+    public Transfer enqueue(Identifier channel, PacketByteBuf packet, @Nullable IPacketSendListener listener)
+    {
+        // The payload gets framed (and compressed) before taking the lock
+        Transfer transfer = new Transfer(channel, packet, listener);
+
+        synchronized (this)
+        {
+            this.channelQueues.computeIfAbsent(channel, c -> new ArrayDeque<>()).add(transfer);
+        }
+
+        return transfer;
+    }
+
+    /**
+     * Sets whether multiple small queued payloads on the given channel can be packed into one packet.
+     * <b>Only enable this if the receiving side supports it!</b>
+     */
+    public synchronized void setCoalescing(Identifier channel, boolean enabled)
+    {
+        if (enabled)
+        {
+            this.coalescingChannels.add(channel);
+        }
+        else
+        {
+            this.coalescingChannels.remove(channel);
+        }
+    }
+
+    /**
+     * Returns the number of bytes still waiting to be sent on the given channel
+     */
+    public synchronized long getQueuedBytes(Identifier channel)
+    {
+        ArrayDeque<Transfer> queue = this.channelQueues.get(channel);
+        long bytes = 0;
+
+        if (queue != null)
+        {
+            for (Transfer transfer : queue)
+            {
+                bytes += transfer.getTotalBytes() - transfer.getSentBytes();
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Drops all the queued payloads. This is called when disconnecting.
+     */
+    public void clear()
+    {
+        List<Transfer> notifications = new ArrayList<>();
+
+        synchronized (this)
+        {
+            this.abortAll(notifications);
+        }
+
+        notifyListeners(notifications);
+    }
+
+    @Override
+    public void onClientTick(MinecraftClient mc)
+    {
+        List<Transfer> notifications;
+
+        synchronized (this)
+        {
+            if (this.channelQueues.isEmpty())
+            {
+                return;
+            }
+
+            notifications = new ArrayList<>();
+
+            if (mc.getNetworkHandler() == null)
+            {
+                this.abortAll(notifications);
+            }
+            else
+            {
+                this.sendQueued(notifications);
+            }
+        }
+
+        notifyListeners(notifications);
+    }
+
+    private void abortAll(List<Transfer> notifications)
+    {
+        for (ArrayDeque<Transfer> queue : this.channelQueues.values())
+        {
+            for (Transfer transfer : queue)
+            {
+                if (transfer.abort() && transfer.listener != null)
+                {
+                    notifications.add(transfer);
+                }
+            }
+        }
+
+        this.channelQueues.clear();
+    }
+
+    private void sendQueued(List<Transfer> notifications)
+    {
+        int bytesPerTick = MaLiLibConfigs.Generic.PACKET_SEND_BYTES_PER_TICK.getIntegerValue();
+        long budget = bytesPerTick > 0 ? bytesPerTick : Long.MAX_VALUE;
+        List<Identifier> channels = new ArrayList<>(this.channelQueues.keySet());
+        int count = channels.size();
+        int start = Math.floorMod(this.roundRobinStart++, count);
+        boolean sentAny = true;
+
+        // Each round sends at most one chunk per channel, so that the channels get interleaved fairly
+        while (budget > 0 && sentAny)
+        {
+            sentAny = false;
+
+            for (int i = 0; i < count && budget > 0; ++i)
+            {
+                Identifier channel = channels.get((start + i) % count);
+                ArrayDeque<Transfer> queue = this.channelQueues.get(channel);
+
+                if (queue.isEmpty() == false)
+                {
+                    budget -= this.sendChunk(channel, queue, notifications);
+                    sentAny = true;
+                }
+            }
+        }
+
+        this.channelQueues.values().removeIf(ArrayDeque::isEmpty);
+    }
+
+    private static void notifyListeners(List<Transfer> transfers)
+    {
+        for (Transfer transfer : transfers)
+        {
+            transfer.notifyListener();
+        }
+    }
+
+    private int sendChunk(Identifier channel, ArrayDeque<Transfer> queue, List<Transfer> notifications)
+    {
+        boolean coalesce = this.coalescingChannels.contains(channel);
+        int limit = PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S;
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer((int) Math.min(limit, queue.peek().getRemainingBytes())));
+        Iterator<Transfer> iter = queue.iterator();
+
+        while (iter.hasNext() && buf.writerIndex() < limit)
+        {
+            Transfer transfer = iter.next();
+            int length = (int) Math.min(limit - buf.writerIndex(), transfer.getRemainingBytes());
+
+            transfer.write(buf, length);
+
+            if (transfer.isDone() == false || coalesce == false)
+            {
+                break;
+            }
+        }
+
+        int length = buf.writerIndex();
+        ClientPlayNetworking.send(channel, buf);
+
+        NetworkMetrics.ChannelMetrics metrics = NetworkMetrics.getInstance().getChannel(channel);
+        metrics.onPacketSent(length);
+
+        while (queue.isEmpty() == false)
+        {
+            Transfer transfer = queue.peek();
+
+            if (transfer.updateProgress() == false)
+            {
+                break;
+            }
+
+            if (transfer.listener != null)
+            {
+                notifications.add(transfer);
+            }
+
+            if (transfer.isDone() == false)
+            {
+                break;
+            }
+
+            queue.poll();
+            metrics.onPayloadSent();
+        }
+
+        return length;
+    }
+
+    public static class Transfer
+    {
+        private final Identifier channel;
+        private final ByteBuf data;
+        private final long totalBytes;
+        @Nullable private final IPacketSendListener listener;
+        private long sentBytes;
+        private long notifiedBytes;
+        private boolean aborted;
+
+        private Transfer(Identifier channel, PacketByteBuf packet, @Nullable IPacketSendListener listener)
+        {
+            this.channel = channel;
+            this.data = PacketSplitter.frame(channel, packet);
+            this.totalBytes = this.data.readableBytes();
+            this.listener = listener;
+        }
+
+        public Identifier getChannel()
+        {
+            return this.channel;
+        }
+
+        /**
+         * Returns the total number of bytes to send, including the length prefix
+         */
+        public long getTotalBytes()
+        {
+            return this.totalBytes;
+        }
+
+        public long getSentBytes()
+        {
+            return this.sentBytes;
+        }
+
+        private long getRemainingBytes()
+        {
+            return this.totalBytes - this.sentBytes;
+        }
+
+        public boolean isDone()
+        {
+            return this.sentBytes >= this.totalBytes;
+        }
+
+        public boolean isAborted()
+        {
+            return this.aborted;
+        }
+
+        private void write(PacketByteBuf buf, int length)
+        {
+            buf.writeBytes(this.data, length);
+            this.sentBytes += length;
+        }
+
+        /**
+         * Records the progress since the last call, for the next {@link #notifyListener()} call.
+         * Releases the data once the transfer is done.
+         * @return true if there was progress since the last call
+         */
+        private boolean updateProgress()
+        {
+            if (this.sentBytes == this.notifiedBytes)
+            {
+                return false;
+            }
+
+            this.notifiedBytes = this.sentBytes;
+
+            if (this.isDone())
+            {
+                this.data.release();
+            }
+
+            return true;
+        }
+
+        /**
+         * Calls the listener with the recorded progress or the abort.
+         * Must not be called while holding the queue lock.
+         */
+        private void notifyListener()
+        {
+            if (this.listener == null)
+            {
+                return;
+            }
+
+            if (this.aborted)
+            {
+                this.listener.onAborted(this.channel);
+                return;
+            }
+
+            this.listener.onProgress(this.channel, this.notifiedBytes, this.totalBytes);
+
+            if (this.notifiedBytes >= this.totalBytes)
+            {
+                this.listener.onComplete(this.channel);
+            }
+        }
+
+        /**
+         * @return true if the transfer was aborted by this call
+         */
+        private boolean abort()
+        {
+            if (this.aborted == false)
+            {
+                this.aborted = true;
+                this.data.release();
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -1,17 +1,16 @@
 package fi.dy.masa.malilib.network;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
-import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
-import org.apache.commons.lang3.tuple.Pair;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.network.listener.ClientPlayPacketListener;
-import net.minecraft.network.listener.PacketListener;
+import net.minecraft.network.listener.ServerPlayPacketListener;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.util.Identifier;
 
@@ -28,109 +27,186 @@ public class PacketSplitter
     public static final int MAX_PAYLOAD_PER_PACKET_C2S = MAX_TOTAL_PER_PACKET_C2S - 5;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_C2S = 1048576;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_S2C = 67108864;
-
-    private static final Map<Pair<PacketListener, Identifier>, ReadingSession> READING_SESSIONS = new HashMap<>();
-
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES_S2C = 2L * DEFAULT_MAX_RECEIVE_SIZE_S2C;
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES_C2S = 16L * DEFAULT_MAX_RECEIVE_SIZE_C2S;
+
+    private static final ReadingSessionManager CLIENT_READING_SESSIONS = new ReadingSessionManager(DEFAULT_MAX_IN_FLIGHT_BYTES_S2C,
+            ReadingSessionManager.DEFAULT_IDLE_TIMEOUT_MS, NetworkMetrics.getInstance());
+    private static final ReadingSessionManager SERVER_READING_SESSIONS = new ReadingSessionManager(DEFAULT_MAX_IN_FLIGHT_BYTES_C2S,
+            ReadingSessionManager.DEFAULT_IDLE_TIMEOUT_MS, NetworkMetrics.getServerInstance());
+
+    /**
+     * Sends the packet to the client, split into chunks of at most {@link #MAX_PAYLOAD_PER_PACKET_S2C} bytes.
+     * Takes ownership of the packet buffer.
+     */
     public static void send(ServerPlayNetworkHandler networkHandler, Identifier channel, PacketByteBuf packet)
     {
-        //send(packet, MAX_PAYLOAD_PER_PACKET_S2C, buf -> networkHandler.sendPacket(new CustomPayloadS2CPacket(channel, buf)));
+        NetworkMetrics.ChannelMetrics metrics = NetworkMetrics.getServerInstance().getChannel(channel);
+        ByteBuf framed = frame(channel, packet);
+
+        try
+        {
+            split(framed, MAX_PAYLOAD_PER_PACKET_S2C, buf -> {
+                metrics.onPacketSent(buf.readableBytes());
+                networkHandler.sendPacket(ServerPlayNetworking.createS2CPacket(channel, buf));
+            });
+        }
+        finally
+        {
+            framed.release();
+        }
+
+        metrics.onPayloadSent();
     }
 
+    /**
+     * Queues the packet to be sent to the server via the {@link PacketSendQueue}.
+     * Use {@link #sendImmediately(ClientPlayNetworkHandler, Identifier, PacketByteBuf)}
+     * if the packet has to be sent right away.
+     * Takes ownership of the packet buffer.
+     */
     public static void send(ClientPlayNetworkHandler networkHandler, Identifier channel, PacketByteBuf packet)
     {
-        //ClientPlayNetworking.send(channel, packet);
-        //send(packet, MAX_PAYLOAD_PER_PACKET_C2S, buf -> networkHandler.sendPacket(new CustomPayloadC2SPacket(new PacketByteBufPayload(channel, buf))));
-        send(channel, packet, MAX_PAYLOAD_PER_PACKET_C2S);
+        PacketSendQueue.getInstance().enqueue(channel, packet, null);
+    }
+
+    /**
+     * Sends the packet to the server right away via the given network handler,
+     * split into chunks of at most {@link #MAX_PAYLOAD_PER_PACKET_C2S} bytes.
+     * This bypasses the {@link PacketSendQueue} and its per-tick send budget,
+     * so the packet may get ahead of the payloads already queued on the same channel.
+     * Takes ownership of the packet buffer.
+     */
+    public static void sendImmediately(ClientPlayNetworkHandler networkHandler, Identifier channel, PacketByteBuf packet)
+    {
+        NetworkMetrics.ChannelMetrics metrics = NetworkMetrics.getInstance().getChannel(channel);
+        ByteBuf framed = frame(channel, packet);
+
+        try
+        {
+            split(framed, MAX_PAYLOAD_PER_PACKET_C2S, buf -> {
+                metrics.onPacketSent(buf.readableBytes());
+                networkHandler.sendPacket(ClientPlayNetworking.createC2SPacket(channel, buf));
+            });
+        }
+        finally
+        {
+            framed.release();
+        }
+
+        metrics.onPayloadSent();
     }
 
-    private static void send(Identifier channel, PacketByteBuf packet, int payloadLimit)
+    /**
+     * Queues the packet to be sent to the server via the {@link PacketSendQueue}.
+     * Takes ownership of the packet buffer.
+     * @param listener an optional listener for the send progress
+     * @return the queued transfer, which can be used to poll the progress
+     */
+    public static PacketSendQueue.Transfer send(Identifier channel, PacketByteBuf packet, @Nullable IPacketSendListener listener)
     {
-        int len = packet.writerIndex();
+        return PacketSendQueue.getInstance().enqueue(channel, packet, listener);
+    }
 
+    /**
+     * Creates the split framing for the packet, which is the VarInt length prefix
+     * followed by the payload. If compression is enabled for the channel via {@link PayloadCompression},
+     * the payload is encoded in the compression format, and the length prefix is written negated to mark that.
+     * Takes ownership of the packet buffer.
+     */
+    public static ByteBuf frame(Identifier channel, PacketByteBuf packet)
+    {
         packet.resetReaderIndex();
 
-        for (int offset = 0; offset < len; offset += payloadLimit)
+        ByteBuf payload = packet;
+        int compressionThreshold = PayloadCompression.getThreshold(channel);
+
+        if (compressionThreshold >= 0)
         {
-            int thisLen = Math.min(len - offset, payloadLimit);
-            PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer(thisLen));
+            payload = PayloadCompression.encode(packet, compressionThreshold);
+        }
 
-            buf.resetWriterIndex();
+        ByteBuf header = Unpooled.buffer(5);
+        int length = payload.readableBytes();
+        new PacketByteBuf(header).writeVarInt(compressionThreshold >= 0 ? -length : length);
 
-            if (offset == 0)
-            {
-                buf.writeVarInt(len);
-            }
+        return Unpooled.wrappedBuffer(header, payload);
+    }
 
-            buf.writeBytes(packet, thisLen);
+    /**
+     * Splits the readable bytes of the framed payload into chunks of at most <b>payloadLimit</b> bytes,
+     * and passes each chunk to the <b>sender</b>.
+     */
+    public static void split(ByteBuf framed, int payloadLimit, Consumer<PacketByteBuf> sender)
+    {
+        while (framed.isReadable())
+        {
+            int length = Math.min(framed.readableBytes(), payloadLimit);
+            PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer(length));
 
-            ClientPlayNetworking.send(channel, buf);
+            buf.writeBytes(framed, length);
+            sender.accept(buf);
         }
-
-        packet.release();
     }
 
+    /**
+     * Receives one chunk of a split payload.
+     * See {@link ReadingSessionManager#receive}. At most one payload is consumed per call.
+     * If compression has been enabled for the channel via {@link PayloadCompression},
+     * then the payload is also decompressed.
+     * @return the full reassembled payload once all the chunks have been received, otherwise null.
+     * The caller owns the returned buffer and must release it once it's done with it.
+     */
     @Nullable
     public static PacketByteBuf receive(ClientPlayPacketListener networkHandler,
                                         Identifier channel,
                                         PacketByteBuf buf)
     {
-        return receive(networkHandler, channel, buf, DEFAULT_MAX_RECEIVE_SIZE_S2C);
+        return CLIENT_READING_SESSIONS.receive(networkHandler, channel, buf, DEFAULT_MAX_RECEIVE_SIZE_S2C);
     }
 
+    /**
+     * Receives one chunk of a split payload sent by a client.
+     * This is the server side counterpart of
+     * {@link #receive(ClientPlayPacketListener, Identifier, PacketByteBuf)},
+     * limited to {@link #DEFAULT_MAX_RECEIVE_SIZE_C2S} bytes per payload.
+     * The handlers registered via {@link ServerPacketChannelHandler} get their payloads through this.
+     * @return the full reassembled payload once all the chunks have been received, otherwise null.
+     * The caller owns the returned buffer and must release it once it's done with it.
+     */
     @Nullable
-    private static PacketByteBuf receive(ClientPlayPacketListener networkHandler,
-                                         Identifier channel,
-                                         PacketByteBuf buf,
-                                         int maxLength)
+    public static PacketByteBuf receive(ServerPlayPacketListener networkHandler,
+                                        Identifier channel,
+                                        PacketByteBuf buf)
     {
-        Pair<PacketListener, Identifier> key = Pair.of(networkHandler, channel);
-
-        return READING_SESSIONS.computeIfAbsent(key, ReadingSession::new).receive(readPayload(buf), maxLength);
+        return SERVER_READING_SESSIONS.receive(networkHandler, channel, buf, DEFAULT_MAX_RECEIVE_SIZE_C2S);
     }
 
-    public static PacketByteBuf readPayload(PacketByteBuf byteBuf)
+    /**
+     * Returns the session manager for the split packets received on the client
+     */
+    public static ReadingSessionManager getClientReadingSessions()
     {
-        PacketByteBuf newBuf = PacketByteBufs.create();
-        newBuf.writeBytes(byteBuf.copy());
-        byteBuf.skipBytes(byteBuf.readableBytes());
-        return newBuf;
+        return CLIENT_READING_SESSIONS;
     }
 
-    private static class ReadingSession
+    /**
+     * Returns the session manager for the split packets received on the (integrated) server
+     */
+    public static ReadingSessionManager getServerReadingSessions()
     {
-        private final Pair<PacketListener, Identifier> key;
-        private int expectedSize = -1;
-        private PacketByteBuf received;
-
-        private ReadingSession(Pair<PacketListener, Identifier> key)
-        {
-            this.key = key;
-        }
-
-        @Nullable
-        private PacketByteBuf receive(PacketByteBuf data, int maxLength)
-        {
-            if (this.expectedSize < 0)
-            {
-                this.expectedSize = data.readVarInt();
-
-                if (this.expectedSize > maxLength)
-                {
-                    throw new IllegalArgumentException("Payload too large");
-                }
-
-                this.received = new PacketByteBuf(Unpooled.buffer(this.expectedSize));
-            }
-
-            this.received.writeBytes(data.readBytes(data.readableBytes()));
-
-            if (this.received.writerIndex() >= this.expectedSize)
-            {
-                READING_SESSIONS.remove(this.key);
-                return this.received;
-            }
+        return SERVER_READING_SESSIONS;
+    }
 
-            return null;
-        }
+    /**
+     * Copies the readable bytes of the given buffer into a new heap buffer,
+     * and consumes them from the source buffer.
+     */
+    public static PacketByteBuf readPayload(PacketByteBuf byteBuf)
+    {
+        int length = byteBuf.readableBytes();
+        PacketByteBuf newBuf = new PacketByteBuf(Unpooled.buffer(length));
+        newBuf.writeBytes(byteBuf, length);
+        return newBuf;
     }
 }
@@ -0,0 +1,222 @@
+package fi.dy.masa.malilib.network;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+/**
+ * Optional compression for the payloads sent in the {@link PacketSplitter} format.<br>
+ * On the channels where compression has been enabled for sending, the split framing's length prefix
+ * is written negated, and each payload starts with a flag byte. {@link #FLAG_UNCOMPRESSED} is followed
+ * by the raw payload, and {@link #FLAG_DEFLATE} is followed by the VarInt uncompressed size and then the Deflate stream.
+ * Payloads smaller than the channel's threshold, or ones that don't get any smaller, are sent uncompressed.<br>
+ * The receiving side recognizes the compressed framing from the length prefix and always decodes it,
+ * so the enabled state only affects sending, and the two sides don't need to toggle it in sync.
+ * Older malilib versions don't understand the compressed framing though, so it should only be
+ * enabled once the other side is known to support it, for example via a handshake in the mod's own protocol.
+ * The compression and decompression both stream directly between the buffers,
+ * so neither side needs any intermediate copies of the uncompressed data.
+ */
+public class PayloadCompression
+{
+    public static final byte FLAG_UNCOMPRESSED = 0;
+    public static final byte FLAG_DEFLATE = 1;
+    public static final int DEFAULT_THRESHOLD = 256;
+    /** The maximum number of bytes the encoding adds to a payload (the flag byte of an uncompressed payload) */
+    public static final int MAX_ENCODING_OVERHEAD = 1;
+
+    private static final Map<Identifier, Integer> THRESHOLDS = new ConcurrentHashMap<>();
+
+    /**
+     * Enables compression for the payloads of at least <b>threshold</b> bytes sent on the given channel.
+     * The received payloads are decoded regardless of this setting.
+     */
+    public static void enable(Identifier channel, int threshold)
+    {
+        THRESHOLDS.put(channel, threshold);
+    }
+
+    public static void disable(Identifier channel)
+    {
+        THRESHOLDS.remove(channel);
+    }
+
+    public static boolean isEnabled(Identifier channel)
+    {
+        return THRESHOLDS.containsKey(channel);
+    }
+
+    /**
+     * Returns the compression threshold of the given channel, or -1 if compression is not enabled on it
+     */
+    public static int getThreshold(Identifier channel)
+    {
+        return THRESHOLDS.getOrDefault(channel, -1);
+    }
+
+    /**
+     * Adds the compression flag to the readable bytes of the given payload, compressing it if it's large enough.
+     * Takes ownership of the payload buffer.
+     * @return the encoded payload
+     */
+    public static ByteBuf encode(ByteBuf payload, int threshold)
+    {
+        int size = payload.readableBytes();
+
+        if (size >= threshold)
+        {
+            ByteBuf compressed = deflate(payload);
+
+            // Only use the compressed data if it's actually smaller
+            if (compressed.readableBytes() < size)
+            {
+                payload.release();
+                return compressed;
+            }
+
+            compressed.release();
+        }
+
+        return Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(new byte[] { FLAG_UNCOMPRESSED }), payload);
+    }
+
+    /**
+     * Reads the compression flag from the given payload, and decompresses the data if necessary.
+     * Takes ownership of the payload buffer.
+     * @param maxLength the maximum allowed uncompressed size
+     * @return the decoded payload
+     * @throws IllegalArgumentException if the data is invalid or larger than <b>maxLength</b>
+     */
+    public static PacketByteBuf decode(PacketByteBuf payload, int maxLength)
+    {
+        byte flag = payload.readByte();
+
+        if (flag == FLAG_UNCOMPRESSED)
+        {
+            return payload;
+        }
+
+        try
+        {
+            if (flag != FLAG_DEFLATE)
+            {
+                throw new IllegalArgumentException("Unknown payload compression type: " + flag);
+            }
+
+            int size = payload.readVarInt();
+
+            if (size < 0 || size > maxLength)
+            {
+                throw new IllegalArgumentException("Payload too large");
+            }
+
+            return new PacketByteBuf(inflate(payload, size));
+        }
+        finally
+        {
+            payload.release();
+        }
+    }
+
+    private static ByteBuf deflate(ByteBuf payload)
+    {
+        int size = payload.readableBytes();
+        ByteBuf out = Unpooled.buffer(Math.max(64, size / 4));
+        Deflater deflater = new Deflater();
+
+        try
+        {
+            out.writeByte(FLAG_DEFLATE);
+            new PacketByteBuf(out).writeVarInt(size);
+
+            // Feed the source buffer component by component, without consolidating it
+            for (ByteBuffer input : payload.nioBuffers(payload.readerIndex(), size))
+            {
+                deflater.setInput(input);
+
+                while (deflater.needsInput() == false)
+                {
+                    deflateInto(deflater, out);
+                }
+            }
+
+            deflater.finish();
+
+            while (deflater.finished() == false)
+            {
+                deflateInto(deflater, out);
+            }
+
+            return out;
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static void deflateInto(Deflater deflater, ByteBuf out)
+    {
+        out.ensureWritable(8192);
+        int length = deflater.deflate(out.nioBuffer(out.writerIndex(), out.writableBytes()));
+        out.writerIndex(out.writerIndex() + length);
+    }
+
+    private static ByteBuf inflate(ByteBuf payload, int size)
+    {
+        // One spare byte, so that the inflater always has room to process the end of the stream,
+        // and any extra data shows up as a size mismatch
+        ByteBuf out = ByteBufAllocator.DEFAULT.heapBuffer(size + 1, size + 1);
+        Inflater inflater = new Inflater();
+
+        try
+        {
+            // Feed the (usually composite) source buffer component by component, without consolidating it
+            for (ByteBuffer input : payload.nioBuffers(payload.readerIndex(), payload.readableBytes()))
+            {
+                inflater.setInput(input);
+
+                while (inflater.needsInput() == false && inflater.finished() == false)
+                {
+                    if (out.isWritable() == false || inflater.needsDictionary())
+                    {
+                        throw new IllegalArgumentException("Invalid compressed payload");
+                    }
+
+                    int length = inflater.inflate(out.nioBuffer(out.writerIndex(), out.writableBytes()));
+                    out.writerIndex(out.writerIndex() + length);
+                }
+            }
+
+            if (inflater.finished() == false || out.writerIndex() != size)
+            {
+                throw new IllegalArgumentException("Invalid compressed payload");
+            }
+
+            return out;
+        }
+        catch (DataFormatException e)
+        {
+            out.release();
+            throw new IllegalArgumentException("Invalid compressed payload", e);
+        }
+        catch (RuntimeException e)
+        {
+            out.release();
+            throw e;
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCounted;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.mixin.IMixinClientConnection;
+
+/**
+ * Runs the decode stage of the {@link IPluginChannelDecodingHandler}s on a small
+ * pool of worker threads, and then schedules the apply stage on the client thread.<br>
+ * Each channel has its own queue, which is drained by at most one worker at a time,
+ * so the payloads of a channel are decoded and applied in the order they were received.
+ * The number of payloads per channel that are waiting to be decoded or applied is limited
+ * by {@link MaLiLibConfigs.Generic#PAYLOAD_DECODE_QUEUE_DEPTH}. When a queue is full,
+ * reading from the connection is paused until all the full queues have drained below the limit,
+ * which applies backpressure to the connection that the payloads arrived from, without blocking the network thread.<br>
+ * Other work that needs to stay in order with the decoded payloads of a channel, such as the payloads
+ * of the non-decoding handlers of the same channel, can be queued via {@link #submit(ClientPlayNetworkHandler, Identifier, Runnable, ReferenceCounted)}.<br>
+ * All the queued work is dropped when disconnecting, see {@link #clear()}.
+ */
+public class PayloadDecodeQueue
+{
+    private static final PayloadDecodeQueue INSTANCE = new PayloadDecodeQueue();
+
+    private final ExecutorService executor;
+    private final Map<Identifier, ChannelQueue> channelQueues = new HashMap<>();
+    private final Set<ChannelQueue> fullQueues = new HashSet<>();
+    @Nullable private Channel pausedChannel;
+
+    public static PayloadDecodeQueue getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private PayloadDecodeQueue()
+    {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        this.executor = Executors.newFixedThreadPool(threads, new DecoderThreadFactory());
+    }
+
+    /**
+     * Queues the payload to be decoded on a worker thread and then applied on the client thread.
+     * Takes ownership of the buffer, which is released after it has been decoded, or when it's dropped.
+     * @param networkHandler the connection that the payload was received from
+     * @param handler
+     * @param buf
+     */
+    public <T> void submit(ClientPlayNetworkHandler networkHandler, IPluginChannelDecodingHandler<T> handler, PacketByteBuf buf)
+    {
+        this.getOrCreateQueue(handler.getChannel()).add(new DecodeTask<>(handler, buf), getConnectionChannel(networkHandler));
+    }
+
+    /**
+     * Queues the task to be run on the client thread, after all the payloads that were
+     * queued before it on the same channel have been decoded and applied
+     * @param networkHandler the connection that the payload of the task was received from
+     * @param channel
+     * @param task
+     * @param payload the payload owned by the task, if any, which is released if the task gets dropped instead of run
+     */
+    public void submit(ClientPlayNetworkHandler networkHandler, Identifier channel, Runnable task, @Nullable ReferenceCounted payload)
+    {
+        this.getOrCreateQueue(channel).add(new RunTask(channel, task, payload), getConnectionChannel(networkHandler));
+    }
+
+    /**
+     * Drops all the payloads and tasks that are still waiting to be decoded or applied,
+     * and resumes reading from any paused connection. Called when disconnecting.<br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void clear()
+    {
+        synchronized (this.channelQueues)
+        {
+            for (ChannelQueue queue : this.channelQueues.values())
+            {
+                queue.clear();
+            }
+        }
+
+        synchronized (this.fullQueues)
+        {
+            this.fullQueues.clear();
+            this.resumeReading();
+        }
+    }
+
+    private ChannelQueue getOrCreateQueue(Identifier channel)
+    {
+        synchronized (this.channelQueues)
+        {
+            return this.channelQueues.computeIfAbsent(channel, key -> new ChannelQueue());
+        }
+    }
+
+    /**
+     * Returns the number of payloads on the given channel
+     * that are waiting to be decoded or applied
+     */
+    public int getQueueDepth(Identifier channel)
+    {
+        ChannelQueue queue;
+
+        synchronized (this.channelQueues)
+        {
+            queue = this.channelQueues.get(channel);
+        }
+
+        return queue != null ? queue.getDepth() : 0;
+    }
+
+    private void setQueueFull(ChannelQueue queue, boolean full, @Nullable Channel connection)
+    {
+        synchronized (this.fullQueues)
+        {
+            if (full)
+            {
+                this.fullQueues.add(queue);
+
+                if (this.pausedChannel == null && connection != null)
+                {
+                    this.pausedChannel = connection;
+                    connection.config().setAutoRead(false);
+                }
+            }
+            else if (this.fullQueues.remove(queue) && this.fullQueues.isEmpty())
+            {
+                this.resumeReading();
+            }
+        }
+    }
+
+    private void resumeReading()
+    {
+        if (this.pausedChannel != null)
+        {
+            this.pausedChannel.config().setAutoRead(true);
+            this.pausedChannel = null;
+        }
+    }
+
+    @Nullable
+    private static Channel getConnectionChannel(ClientPlayNetworkHandler networkHandler)
+    {
+        return ((IMixinClientConnection) networkHandler.getConnection()).malilib_getChannel();
+    }
+
+    private class ChannelQueue
+    {
+        private final ArrayDeque<ITask> pending = new ArrayDeque<>();
+        private boolean running;
+        private int depth;
+        // Incremented when the queue is cleared, so that the tasks that were already
+        // being decoded at that point don't get applied afterwards
+        private int generation;
+
+        private synchronized int getDepth()
+        {
+            return this.depth;
+        }
+
+        private synchronized void add(ITask task, @Nullable Channel connection)
+        {
+            ++this.depth;
+            this.pending.add(task);
+
+            if (this.running == false)
+            {
+                this.running = true;
+                PayloadDecodeQueue.this.executor.execute(this::drain);
+            }
+
+            // Never wait here, as this is called on the network thread.
+            // Instead stop reading from the connection until the queue has drained.
+            if (this.depth >= MaLiLibConfigs.Generic.PAYLOAD_DECODE_QUEUE_DEPTH.getIntegerValue())
+            {
+                PayloadDecodeQueue.this.setQueueFull(this, true, connection);
+            }
+        }
+
+        private synchronized void clear()
+        {
+            for (ITask task : this.pending)
+            {
+                task.discard();
+            }
+
+            this.depth -= this.pending.size();
+            this.pending.clear();
+            ++this.generation;
+        }
+
+        private synchronized boolean isCurrent(int generation)
+        {
+            return this.generation == generation;
+        }
+
+        private void drain()
+        {
+            while (true)
+            {
+                ITask task;
+                int generation;
+
+                synchronized (this)
+                {
+                    task = this.pending.poll();
+                    generation = this.generation;
+
+                    if (task == null)
+                    {
+                        this.running = false;
+                        return;
+                    }
+                }
+
+                if (task.decode())
+                {
+                    // The tasks of a channel are decoded one at a time,
+                    // so they also get scheduled on the client thread in order
+                    MinecraftClient.getInstance().execute(() -> {
+                        if (this.isCurrent(generation))
+                        {
+                            task.apply();
+                        }
+                        else
+                        {
+                            task.discard();
+                        }
+
+                        this.onTaskDone();
+                    });
+                }
+                else
+                {
+                    this.onTaskDone();
+                }
+            }
+        }
+
+        private synchronized void onTaskDone()
+        {
+            --this.depth;
+
+            if (this.depth < MaLiLibConfigs.Generic.PAYLOAD_DECODE_QUEUE_DEPTH.getIntegerValue())
+            {
+                PayloadDecodeQueue.this.setQueueFull(this, false, null);
+            }
+        }
+    }
+
+    private interface ITask
+    {
+        /**
+         * Runs the decode stage on a worker thread
+         * @return true if the apply stage should be run
+         */
+        boolean decode();
+
+        /**
+         * Runs the apply stage on the client thread
+         */
+        void apply();
+
+        /**
+         * Releases anything still held by the task, when it gets dropped
+         * instead of being decoded or applied
+         */
+        void discard();
+    }
+
+    private static class RunTask implements ITask
+    {
+        private final Identifier channel;
+        private final Runnable task;
+        @Nullable private final ReferenceCounted payload;
+
+        private RunTask(Identifier channel, Runnable task, @Nullable ReferenceCounted payload)
+        {
+            this.channel = channel;
+            this.task = task;
+            this.payload = payload;
+        }
+
+        @Override
+        public boolean decode()
+        {
+            return true;
+        }
+
+        @Override
+        public void apply()
+        {
+            try
+            {
+                this.task.run();
+            }
+            catch (Exception e)
+            {
+                MaLiLib.logger.error("Exception while handling a payload on channel '{}'", this.channel, e);
+            }
+        }
+
+        @Override
+        public void discard()
+        {
+            if (this.payload != null)
+            {
+                this.payload.release();
+            }
+        }
+    }
+
+    private static class DecodeTask<T> implements ITask
+    {
+        private final IPluginChannelDecodingHandler<T> handler;
+        private final PacketByteBuf buf;
+        private final long queueTime;
+        private boolean decoded;
+        @Nullable private T data;
+
+        private DecodeTask(IPluginChannelDecodingHandler<T> handler, PacketByteBuf buf)
+        {
+            this.handler = handler;
+            this.buf = buf;
+            this.queueTime = System.nanoTime();
+        }
+
+        @Override
+        public boolean decode()
+        {
+            try
+            {
+                this.data = this.handler.decode(this.buf);
+            }
+            catch (Exception e)
+            {
+                MaLiLib.logger.error("Exception while decoding a payload on channel '{}'", this.handler.getChannel(), e);
+            }
+            finally
+            {
+                this.buf.release();
+                this.decoded = true;
+            }
+
+            return this.data != null;
+        }
+
+        @Override
+        public void apply()
+        {
+            NetworkMetrics.getInstance().getChannel(this.handler.getChannel()).recordApplyLatency(System.nanoTime() - this.queueTime);
+
+            try
+            {
+                this.handler.apply(this.data);
+            }
+            catch (Exception e)
+            {
+                MaLiLib.logger.error("Exception while applying a payload on channel '{}'", this.handler.getChannel(), e);
+            }
+        }
+
+        @Override
+        public void discard()
+        {
+            if (this.decoded == false)
+            {
+                this.buf.release();
+            }
+
+            this.data = null;
+        }
+    }
+
+    private static class DecoderThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "MaLiLib Payload Decoder #" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import org.apache.commons.lang3.tuple.Pair;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.PacketListener;
+import net.minecraft.util.Identifier;
+
+import fi.dy.masa.malilib.MaLiLib;
+
+/**
+ * Keeps track of the partially received split packets, per connection and channel.<br>
+ * The buffered data is bounded in three ways:
+ * all the sessions of a connection are aborted when it disconnects,
+ * sessions that haven't received any data within the idle timeout are expired,
+ * and the total number of buffered bytes over all the sessions is capped,
+ * with the least recently active sessions getting evicted to make room.<br>
+ * An evicted session keeps counting the bytes of its remaining chunks without buffering them,
+ * so that the rest of that transfer doesn't get mistaken for the start of a new payload.<br>
+ * All the methods are thread-safe.
+ */
+public class ReadingSessionManager
+{
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000L;
+    private static final long EXPIRY_CHECK_INTERVAL = 1000000000L; // 1 second
+
+    private final Map<Pair<PacketListener, Identifier>, ReadingSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    @Nullable private final NetworkMetrics metrics;
+    private long maxInFlightBytes;
+    private long idleTimeout;
+    private long inFlightBytes;
+    private long lastExpiryCheck;
+    private long evictedCount;
+    private long expiredCount;
+    private long abortedCount;
+
+    public ReadingSessionManager(long maxInFlightBytes)
+    {
+        this(maxInFlightBytes, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public ReadingSessionManager(long maxInFlightBytes, long idleTimeoutMs)
+    {
+        this(maxInFlightBytes, idleTimeoutMs, null);
+    }
+
+    /**
+     * @param metrics if not null, then the reassembly times of the split payloads are recorded here
+     */
+    public ReadingSessionManager(long maxInFlightBytes, long idleTimeoutMs, @Nullable NetworkMetrics metrics)
+    {
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.idleTimeout = idleTimeoutMs * 1000000L;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Receives one chunk of a split payload.
+     * The data is not copied, instead retained slices of the incoming buffers
+     * are collected into a {@link CompositeByteBuf}.
+     * The <b>buf</b> itself is not released, but the bytes belonging to the payload are consumed.
+     * At most one payload is consumed per call, so if the packet carries
+     * multiple coalesced payloads, this should be called until the buffer is no longer readable.<br>
+     * The payloads framed in the {@link PayloadCompression} format (marked by a negated length prefix)
+     * are always decoded, no matter whether compression is enabled for the channel on this side.
+     * The decompression is done outside of the session lock.
+     * @param connection the connection the data arrived from
+     * @param maxLength the maximum allowed total size of the payload
+     * @return the full reassembled payload once all the chunks have been received, otherwise null.
+     * The caller owns the returned buffer and must release it once it's done with it.
+     * @throws IllegalArgumentException if the payload is larger than <b>maxLength</b>
+     */
+    @Nullable
+    public PacketByteBuf receive(PacketListener connection, Identifier channel, PacketByteBuf buf, int maxLength)
+    {
+        PacketByteBuf payload = this.receiveChunk(connection, channel, buf, maxLength);
+
+        if (payload instanceof CompressedPayload)
+        {
+            return PayloadCompression.decode(payload, maxLength);
+        }
+
+        return payload;
+    }
+
+    @Nullable
+    private synchronized PacketByteBuf receiveChunk(PacketListener connection, Identifier channel, PacketByteBuf buf, int maxLength)
+    {
+        long now = System.nanoTime();
+
+        if (now - this.lastExpiryCheck >= EXPIRY_CHECK_INTERVAL)
+        {
+            this.expireIdleSessions(now);
+        }
+
+        Pair<PacketListener, Identifier> key = Pair.of(connection, channel);
+        ReadingSession session = this.sessions.get(key);
+
+        if (session == null)
+        {
+            int expectedSize = buf.readVarInt();
+            boolean compressed = expectedSize < 0;
+
+            if (compressed)
+            {
+                expectedSize = -expectedSize;
+            }
+
+            // The encoded size can't be larger than the allowed payload size plus the encoding overhead
+            if (expectedSize < 0 || expectedSize - (compressed ? PayloadCompression.MAX_ENCODING_OVERHEAD : 0) > maxLength)
+            {
+                ++this.abortedCount;
+                throw new IllegalArgumentException("Payload too large");
+            }
+
+            // The common single-chunk case doesn't need a session or a composite buffer at all
+            if (buf.readableBytes() >= expectedSize)
+            {
+                return wrap(buf.readRetainedSlice(expectedSize), compressed);
+            }
+
+            session = new ReadingSession(channel, expectedSize, compressed, now);
+            this.sessions.put(key, session);
+        }
+
+        int length = Math.min(buf.readableBytes(), session.expectedSize - session.receivedBytes);
+
+        session.receivedBytes += length;
+        session.lastActivityTime = now;
+
+        if (session.buffer != null)
+        {
+            this.makeRoomFor(session, length);
+        }
+
+        if (session.buffer != null)
+        {
+            session.buffer.addComponent(true, buf.readRetainedSlice(length));
+            this.inFlightBytes += length;
+        }
+        else
+        {
+            buf.skipBytes(length);
+        }
+
+        if (session.receivedBytes >= session.expectedSize)
+        {
+            this.sessions.remove(key);
+            CompositeByteBuf received = session.buffer;
+
+            if (received != null)
+            {
+                if (this.metrics != null)
+                {
+                    this.metrics.getChannel(channel).recordReassemblyTime(now - session.startTime);
+                }
+
+                this.inFlightBytes -= received.writerIndex();
+                return wrap(received, session.compressed);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Evicts the least recently active other sessions until there is room for
+     * <b>length</b> more bytes. If that is not enough, then the given session is evicted.
+     */
+    private void makeRoomFor(ReadingSession session, int length)
+    {
+        if (this.inFlightBytes + length <= this.maxInFlightBytes)
+        {
+            return;
+        }
+
+        // The iteration order is from the least recently accessed to the most recently accessed
+        for (ReadingSession other : this.sessions.values())
+        {
+            if (other != session && other.buffer != null)
+            {
+                this.evict(other);
+
+                if (this.inFlightBytes + length <= this.maxInFlightBytes)
+                {
+                    return;
+                }
+            }
+        }
+
+        this.evict(session);
+    }
+
+    private void evict(ReadingSession session)
+    {
+        MaLiLib.logger.warn("Dropping a partially received payload of {} bytes on channel '{}', " +
+                            "the in-flight payload limit of {} bytes was reached",
+                            session.expectedSize, session.channel, this.maxInFlightBytes);
+
+        this.inFlightBytes -= session.release();
+        ++this.evictedCount;
+    }
+
+    private void removeSession(Pair<PacketListener, Identifier> key, ReadingSession session)
+    {
+        this.sessions.remove(key);
+        this.inFlightBytes -= session.release();
+    }
+
+    /**
+     * Removes all the sessions that haven't received any data within the idle timeout.
+     * This is also done periodically while receiving data.
+     */
+    public synchronized void expireIdleSessions()
+    {
+        this.expireIdleSessions(System.nanoTime());
+    }
+
+    private void expireIdleSessions(long now)
+    {
+        Iterator<ReadingSession> iter = this.sessions.values().iterator();
+        this.lastExpiryCheck = now;
+
+        while (iter.hasNext())
+        {
+            ReadingSession session = iter.next();
+
+            if (now - session.lastActivityTime > this.idleTimeout)
+            {
+                this.inFlightBytes -= session.release();
+                iter.remove();
+                ++this.expiredCount;
+            }
+        }
+    }
+
+    /**
+     * Aborts all the sessions of the given connection.
+     * This should be called when the connection is closed.
+     */
+    public synchronized void onDisconnect(PacketListener connection)
+    {
+        Iterator<Map.Entry<Pair<PacketListener, Identifier>, ReadingSession>> iter = this.sessions.entrySet().iterator();
+
+        while (iter.hasNext())
+        {
+            Map.Entry<Pair<PacketListener, Identifier>, ReadingSession> entry = iter.next();
+
+            if (entry.getKey().getLeft() == connection)
+            {
+                this.inFlightBytes -= entry.getValue().release();
+                iter.remove();
+                ++this.abortedCount;
+            }
+        }
+    }
+
+    /**
+     * Aborts all the sessions
+     */
+    public synchronized void clear()
+    {
+        for (ReadingSession session : this.sessions.values())
+        {
+            session.release();
+            ++this.abortedCount;
+        }
+
+        this.sessions.clear();
+        this.inFlightBytes = 0;
+    }
+
+    public synchronized void setMaxInFlightBytes(long maxInFlightBytes)
+    {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public synchronized void setIdleTimeout(long idleTimeoutMs)
+    {
+        this.idleTimeout = idleTimeoutMs * 1000000L;
+    }
+
+    public synchronized int getSessionCount()
+    {
+        return this.sessions.size();
+    }
+
+    /**
+     * Returns the number of bytes currently buffered over all the sessions
+     */
+    public synchronized long getInFlightBytes()
+    {
+        return this.inFlightBytes;
+    }
+
+    /**
+     * Returns the number of sessions that have been evicted because of the in-flight byte limit
+     */
+    public synchronized long getEvictedSessionCount()
+    {
+        return this.evictedCount;
+    }
+
+    /**
+     * Returns the number of sessions that have been removed because of the idle timeout
+     */
+    public synchronized long getExpiredSessionCount()
+    {
+        return this.expiredCount;
+    }
+
+    /**
+     * Returns the number of sessions that have been aborted because of
+     * a disconnect or a payload size violation
+     */
+    public synchronized long getAbortedSessionCount()
+    {
+        return this.abortedCount;
+    }
+
+    private static PacketByteBuf wrap(ByteBuf payload, boolean compressed)
+    {
+        return compressed ? new CompressedPayload(payload) : new PacketByteBuf(payload);
+    }
+
+    /**
+     * Marks a reassembled payload that still needs to be decoded via {@link PayloadCompression#decode(PacketByteBuf, int)}
+     */
+    private static class CompressedPayload extends PacketByteBuf
+    {
+        private CompressedPayload(ByteBuf parent)
+        {
+            super(parent);
+        }
+    }
+
+    private static class ReadingSession
+    {
+        private final Identifier channel;
+        private final int expectedSize;
+        private final boolean compressed;
+        private final long startTime;
+        // The components are never consolidated, as that would copy the data again
+        @Nullable private CompositeByteBuf buffer = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+        private int receivedBytes;
+        private long lastActivityTime;
+
+        private ReadingSession(Identifier channel, int expectedSize, boolean compressed, long startTime)
+        {
+            this.channel = channel;
+            this.expectedSize = expectedSize;
+            this.compressed = compressed;
+            this.startTime = startTime;
+        }
+
+        /**
+         * Releases the buffered data, if any
+         * @return the number of bytes that were buffered
+         */
+        private int release()
+        {
+            if (this.buffer == null)
+            {
+                return 0;
+            }
+
+            int size = this.buffer.writerIndex();
+            this.buffer.release();
+            this.buffer = null;
+
+            return size;
+        }
+    }
+}
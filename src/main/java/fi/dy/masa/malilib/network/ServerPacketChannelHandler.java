@@ -0,0 +1,137 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import fi.dy.masa.malilib.event.HandlerList;
+
+/**
+ * Registers one server side network receiver per channel, no matter how many handlers are registered for it.
+ * The payloads that clients send via {@link PacketSplitter} are reassembled once per channel,
+ * and then each handler gets its own copy of the payload on the server thread.
+ */
+public class ServerPacketChannelHandler implements IServerPacketChannelHandler
+{
+    private static final ServerPacketChannelHandler INSTANCE = new ServerPacketChannelHandler();
+
+    private final Map<Identifier, HandlerList<IServerPluginChannelHandler>> receivers = new ConcurrentHashMap<>();
+
+    public static IServerPacketChannelHandler getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private ServerPacketChannelHandler()
+    {
+    }
+
+    @Override
+    public synchronized void registerServerChannelHandler(IServerPluginChannelHandler handler)
+    {
+        Identifier channel = handler.getChannel();
+        HandlerList<IServerPluginChannelHandler> list = this.receivers.get(channel);
+
+        if (list == null)
+        {
+            list = new HandlerList<>(new IServerPluginChannelHandler[0]);
+            this.receivers.put(channel, list);
+            ServerPlayNetworking.registerGlobalReceiver(channel, (server, player, net, buf, responder) -> this.onPayloadReceived(channel, server, player, net, buf));
+        }
+
+        list.register(handler);
+    }
+
+    @Override
+    public synchronized void unregisterServerChannelHandler(IServerPluginChannelHandler handler)
+    {
+        Identifier channel = handler.getChannel();
+        HandlerList<IServerPluginChannelHandler> list = this.receivers.get(channel);
+
+        if (list != null && list.unregister(handler) && list.isEmpty())
+        {
+            this.receivers.remove(channel);
+            ServerPlayNetworking.unregisterGlobalReceiver(channel);
+        }
+    }
+
+    /**
+     * Called on the network thread
+     */
+    private void onPayloadReceived(Identifier channel, MinecraftServer server, ServerPlayerEntity player,
+                                   ServerPlayNetworkHandler netHandler, PacketByteBuf buf)
+    {
+        HandlerList<IServerPluginChannelHandler> list = this.receivers.get(channel);
+
+        if (list == null)
+        {
+            return;
+        }
+
+        NetworkMetrics.ChannelMetrics metrics = NetworkMetrics.getServerInstance().getChannel(channel);
+        IServerPluginChannelHandler[] handlers = list.getHandlers();
+        boolean useSplitter = false;
+        boolean rawPayload = false;
+
+        metrics.onPacketReceived(buf.readableBytes());
+
+        // The handlers not using the packet splitter get the raw payload
+        for (IServerPluginChannelHandler handler : handlers)
+        {
+            if (handler.usePacketSplitter())
+            {
+                useSplitter = true;
+            }
+            else
+            {
+                if (rawPayload == false)
+                {
+                    rawPayload = true;
+                    metrics.onPayloadReceived();
+                }
+
+                dispatch(handler, buf, server, player);
+            }
+        }
+
+        // One packet can carry the end of one payload and any number of coalesced payloads after it
+        while (useSplitter && buf.isReadable())
+        {
+            PacketByteBuf fullPayload = PacketSplitter.receive(netHandler, channel, buf);
+
+            if (fullPayload != null)
+            {
+                metrics.onPayloadReceived();
+
+                try
+                {
+                    for (IServerPluginChannelHandler handler : handlers)
+                    {
+                        if (handler.usePacketSplitter())
+                        {
+                            dispatch(handler, fullPayload, server, player);
+                        }
+                    }
+                }
+                finally
+                {
+                    fullPayload.release();
+                }
+            }
+        }
+    }
+
+    private static void dispatch(IServerPluginChannelHandler handler, PacketByteBuf payload,
+                                 MinecraftServer server, ServerPlayerEntity player)
+    {
+        PacketByteBuf copy = new PacketByteBuf(Unpooled.copiedBuffer(payload));
+        server.execute(() -> handler.onPacketReceived(server, player, copy));
+    }
+}
@@ -0,0 +1,192 @@
+package fi.dy.masa.malilib.render;
+
+import java.nio.ByteBuffer;
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL15;
+
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * A retained-mode mesh of boxes, stored in GPU vertex buffers.<br>
+ * The owner supplies a version number for its current set of boxes, and the geometry
+ * only gets rebuilt and re-uploaded when that version changes (see {@link #needsUpdate(long)}).
+ * The camera offset is applied via the model-view matrix when rendering,
+ * so a static set of boxes doesn't need to be rebuilt when the camera moves.<br>
+ * The caller is responsible for setting up the blend, depth and line width state
+ * before calling {@link #render(Matrix4f, Matrix4f, Vec3d, boolean, boolean)},
+ * same as for the immediate mode RenderUtils box methods.
+ */
+public class BoxMesh
+{
+    private final Matrix4f matrix = new Matrix4f();
+    private final MeshBuffer quads = new MeshBuffer(VertexFormat.DrawMode.QUADS);
+    private final MeshBuffer lines = new MeshBuffer(VertexFormat.DrawMode.DEBUG_LINES);
+    private long version;
+    private boolean hasVersion;
+    private int quadVertexCount;
+    private int lineVertexCount;
+    private double originX;
+    private double originY;
+    private double originZ;
+
+    /**
+     * Returns true if the mesh has not been built yet, or if it was built with a different version
+     * @param version
+     * @return
+     */
+    public boolean needsUpdate(long version)
+    {
+        return this.hasVersion == false || this.version != version;
+    }
+
+    /**
+     * Uploads the geometry from the given builder, and stores the version it represents
+     * @param version
+     * @param builder
+     */
+    public void update(long version, BoxMeshBuilder builder)
+    {
+        this.quadVertexCount = builder.getQuadVertexCount();
+        this.lineVertexCount = builder.getLineVertexCount();
+        this.originX = builder.getOriginX();
+        this.originY = builder.getOriginY();
+        this.originZ = builder.getOriginZ();
+
+        if (this.quadVertexCount > 0)
+        {
+            this.quads.upload(builder.getQuadData());
+        }
+
+        if (this.lineVertexCount > 0)
+        {
+            this.lines.upload(builder.getLineData());
+        }
+
+        this.version = version;
+        this.hasVersion = true;
+    }
+
+    public void render(Matrix4f modelViewMatrix, Matrix4f projMatrix, Vec3d cameraPos, boolean renderSides, boolean renderEdges)
+    {
+        ShaderProgram shader = GameRenderer.getPositionColorProgram();
+
+        if (shader == null || (this.quadVertexCount == 0 && this.lineVertexCount == 0))
+        {
+            return;
+        }
+
+        this.matrix.set(modelViewMatrix).translate((float) (this.originX - cameraPos.x),
+                                                   (float) (this.originY - cameraPos.y),
+                                                   (float) (this.originZ - cameraPos.z));
+
+        // The position color shader only uses these uniforms
+        if (shader.modelViewMat != null)
+        {
+            shader.modelViewMat.set(this.matrix);
+        }
+
+        if (shader.projectionMat != null)
+        {
+            shader.projectionMat.set(projMatrix);
+        }
+
+        if (shader.colorModulator != null)
+        {
+            shader.colorModulator.set(RenderSystem.getShaderColor());
+        }
+
+        shader.bind();
+
+        if (renderSides && this.quadVertexCount > 0)
+        {
+            this.quads.draw(this.quadVertexCount);
+        }
+
+        if (renderEdges && this.lineVertexCount > 0)
+        {
+            this.lines.draw(this.lineVertexCount);
+        }
+
+        shader.unbind();
+
+        GlStateManager._glBindVertexArray(0);
+        // The vanilla immediate mode rendering tracks the bound vertex buffer
+        BufferRenderer.reset();
+    }
+
+    /**
+     * Releases the GPU buffers. The mesh can still be re-built after this.
+     */
+    public void delete()
+    {
+        this.quads.delete();
+        this.lines.delete();
+
+        this.quadVertexCount = 0;
+        this.lineVertexCount = 0;
+        this.hasVersion = false;
+    }
+
+    /**
+     * A vertex array and a vertex buffer in the POSITION_COLOR format.
+     * The vertex data from the {@link BoxMeshBuilder} is uploaded as is,
+     * and the indices come from the shared sequential index buffers.
+     */
+    private static class MeshBuffer
+    {
+        private final VertexFormat.DrawMode drawMode;
+        private int vertexArrayId = -1;
+        private int vertexBufferId = -1;
+
+        private MeshBuffer(VertexFormat.DrawMode drawMode)
+        {
+            this.drawMode = drawMode;
+        }
+
+        private void upload(ByteBuffer data)
+        {
+            RenderSystem.assertOnRenderThread();
+
+            if (this.vertexArrayId == -1)
+            {
+                this.vertexArrayId = GlStateManager._glGenVertexArrays();
+                this.vertexBufferId = GlStateManager._glGenBuffers();
+            }
+
+            GlStateManager._glBindVertexArray(this.vertexArrayId);
+            GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vertexBufferId);
+            RenderSystem.glBufferData(GL15.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
+            VertexFormats.POSITION_COLOR.setupState();
+            GlStateManager._glBindVertexArray(0);
+            BufferRenderer.reset();
+        }
+
+        private void draw(int vertexCount)
+        {
+            RenderSystem.ShapeIndexBuffer indexBuffer = RenderSystem.getSequentialBuffer(this.drawMode);
+            int indexCount = this.drawMode.getIndexCount(vertexCount);
+
+            GlStateManager._glBindVertexArray(this.vertexArrayId);
+            indexBuffer.bindAndGrow(indexCount);
+            RenderSystem.drawElements(this.drawMode.glMode, indexCount, indexBuffer.getIndexType().glType);
+        }
+
+        private void delete()
+        {
+            if (this.vertexArrayId != -1)
+            {
+                GlStateManager._glDeleteBuffers(this.vertexBufferId);
+                GlStateManager._glDeleteVertexArrays(this.vertexArrayId);
+                this.vertexBufferId = -1;
+                this.vertexArrayId = -1;
+            }
+        }
+    }
+}
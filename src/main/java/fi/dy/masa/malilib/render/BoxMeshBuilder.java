@@ -0,0 +1,292 @@
+package fi.dy.masa.malilib.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.annotation.Nullable;
+import fi.dy.masa.malilib.util.Color4f;
+
+/**
+ * Builds the vertex data for a set of boxes, in the POSITION_COLOR vertex format
+ * (3 floats for the position and 4 unsigned bytes for the RGBA color per vertex).<br>
+ * The box sides are written as quads and the box edges as line segments. The same vertex order
+ * is also used by {@link RenderUtils#drawBoxAllSidesBatchedQuads} and
+ * {@link RenderUtils#drawBoxAllEdgesBatchedLines}. All the positions are stored
+ * relative to the origin given in the constructor, to keep the float precision
+ * good even far away from the world origin.<br>
+ * This class only writes into plain {@link ByteBuffer}s and doesn't touch any
+ * rendering state, so it can be used off the render thread.
+ */
+public class BoxMeshBuilder
+{
+    public static final int VERTEX_SIZE = 16;
+    public static final int VERTICES_PER_BOX_SIDES = 24;
+    public static final int VERTICES_PER_BOX_EDGES = 24;
+
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+    private ByteBuffer quads;
+    private ByteBuffer lines;
+
+    public BoxMeshBuilder(double originX, double originY, double originZ)
+    {
+        this(originX, originY, originZ, 64);
+    }
+
+    public BoxMeshBuilder(double originX, double originY, double originZ, int expectedBoxCount)
+    {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.quads = allocate(expectedBoxCount * VERTICES_PER_BOX_SIDES * VERTEX_SIZE);
+        this.lines = allocate(expectedBoxCount * VERTICES_PER_BOX_EDGES * VERTEX_SIZE);
+    }
+
+    public double getOriginX()
+    {
+        return this.originX;
+    }
+
+    public double getOriginY()
+    {
+        return this.originY;
+    }
+
+    public double getOriginZ()
+    {
+        return this.originZ;
+    }
+
+    public int getQuadVertexCount()
+    {
+        return this.quads.position() / VERTEX_SIZE;
+    }
+
+    public int getLineVertexCount()
+    {
+        return this.lines.position() / VERTEX_SIZE;
+    }
+
+    /**
+     * Returns a read-only view of the quad vertex data written so far
+     */
+    public ByteBuffer getQuadData()
+    {
+        return this.quads.duplicate().flip().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns a read-only view of the line vertex data written so far
+     */
+    public ByteBuffer getLineData()
+    {
+        return this.lines.duplicate().flip().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Adds a box with the given absolute world coordinates
+     * @param sideColor the color for the box sides, or null to not add the sides
+     * @param edgeColor the color for the box edges, or null to not add the edges
+     */
+    public BoxMeshBuilder addBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                 @Nullable Color4f sideColor, @Nullable Color4f edgeColor)
+    {
+        double x1 = minX - this.originX;
+        double y1 = minY - this.originY;
+        double z1 = minZ - this.originZ;
+        double x2 = maxX - this.originX;
+        double y2 = maxY - this.originY;
+        double z2 = maxZ - this.originZ;
+
+        if (sideColor != null)
+        {
+            ByteBuffer buf = ensureCapacity(this.quads, VERTICES_PER_BOX_SIDES * VERTEX_SIZE);
+            int color = packColor(sideColor);
+
+            this.quads = buf;
+            writeSides(x1, y1, z1, x2, y2, z2, (x, y, z) -> putVertex(buf, (float) x, (float) y, (float) z, color));
+        }
+
+        if (edgeColor != null)
+        {
+            ByteBuffer buf = ensureCapacity(this.lines, VERTICES_PER_BOX_EDGES * VERTEX_SIZE);
+            int color = packColor(edgeColor);
+
+            this.lines = buf;
+            writeEdges(x1, y1, z1, x2, y2, z2, (x, y, z) -> putVertex(buf, (float) x, (float) y, (float) z, color));
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds a box covering the blocks between the two given corner block positions, inclusive
+     */
+    public BoxMeshBuilder addBlockBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                      @Nullable Color4f sideColor, @Nullable Color4f edgeColor)
+    {
+        return this.addBox(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1, sideColor, edgeColor);
+    }
+
+    public void clear()
+    {
+        this.quads.clear();
+        this.lines.clear();
+    }
+
+    /**
+     * Writes all the six sides of the box as quads
+     */
+    static void writeSides(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, IVertexSink sink)
+    {
+        writeHorizontalSides(minX, minY, minZ, maxX, maxY, maxZ, sink);
+        writeTop(minX, minZ, maxX, maxY, maxZ, sink);
+        writeBottom(minX, minY, minZ, maxX, maxZ, sink);
+    }
+
+    static void writeHorizontalSides(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, IVertexSink sink)
+    {
+        // West side
+        sink.vertex(minX, minY, minZ);
+        sink.vertex(minX, minY, maxZ);
+        sink.vertex(minX, maxY, maxZ);
+        sink.vertex(minX, maxY, minZ);
+
+        // East side
+        sink.vertex(maxX, minY, maxZ);
+        sink.vertex(maxX, minY, minZ);
+        sink.vertex(maxX, maxY, minZ);
+        sink.vertex(maxX, maxY, maxZ);
+
+        // North side
+        sink.vertex(maxX, minY, minZ);
+        sink.vertex(minX, minY, minZ);
+        sink.vertex(minX, maxY, minZ);
+        sink.vertex(maxX, maxY, minZ);
+
+        // South side
+        sink.vertex(minX, minY, maxZ);
+        sink.vertex(maxX, minY, maxZ);
+        sink.vertex(maxX, maxY, maxZ);
+        sink.vertex(minX, maxY, maxZ);
+    }
+
+    static void writeTop(double minX, double minZ, double maxX, double maxY, double maxZ, IVertexSink sink)
+    {
+        // Top side
+        sink.vertex(minX, maxY, maxZ);
+        sink.vertex(maxX, maxY, maxZ);
+        sink.vertex(maxX, maxY, minZ);
+        sink.vertex(minX, maxY, minZ);
+    }
+
+    static void writeBottom(double minX, double minY, double minZ, double maxX, double maxZ, IVertexSink sink)
+    {
+        // Bottom side
+        sink.vertex(maxX, minY, maxZ);
+        sink.vertex(minX, minY, maxZ);
+        sink.vertex(minX, minY, minZ);
+        sink.vertex(maxX, minY, minZ);
+    }
+
+    /**
+     * Writes the twelve edges of the box as line segments
+     */
+    static void writeEdges(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, IVertexSink sink)
+    {
+        // West side
+        sink.vertex(minX, minY, minZ);
+        sink.vertex(minX, minY, maxZ);
+
+        sink.vertex(minX, minY, maxZ);
+        sink.vertex(minX, maxY, maxZ);
+
+        sink.vertex(minX, maxY, maxZ);
+        sink.vertex(minX, maxY, minZ);
+
+        sink.vertex(minX, maxY, minZ);
+        sink.vertex(minX, minY, minZ);
+
+        // East side
+        sink.vertex(maxX, minY, maxZ);
+        sink.vertex(maxX, minY, minZ);
+
+        sink.vertex(maxX, minY, minZ);
+        sink.vertex(maxX, maxY, minZ);
+
+        sink.vertex(maxX, maxY, minZ);
+        sink.vertex(maxX, maxY, maxZ);
+
+        sink.vertex(maxX, maxY, maxZ);
+        sink.vertex(maxX, minY, maxZ);
+
+        // North side (don't repeat the vertical lines that are done by the east/west sides)
+        sink.vertex(maxX, minY, minZ);
+        sink.vertex(minX, minY, minZ);
+
+        sink.vertex(minX, maxY, minZ);
+        sink.vertex(maxX, maxY, minZ);
+
+        // South side (don't repeat the vertical lines that are done by the east/west sides)
+        sink.vertex(minX, minY, maxZ);
+        sink.vertex(maxX, minY, maxZ);
+
+        sink.vertex(maxX, maxY, maxZ);
+        sink.vertex(minX, maxY, maxZ);
+    }
+
+    private static void putVertex(ByteBuffer buf, float x, float y, float z, int color)
+    {
+        buf.putFloat(x);
+        buf.putFloat(y);
+        buf.putFloat(z);
+        buf.putInt(color);
+    }
+
+    /**
+     * Packs the color so that the bytes end up in the RGBA order in the buffer
+     */
+    private static int packColor(Color4f color)
+    {
+        int r = (int) (color.r * 255f) & 0xFF;
+        int g = (int) (color.g * 255f) & 0xFF;
+        int b = (int) (color.b * 255f) & 0xFF;
+        int a = (int) (color.a * 255f) & 0xFF;
+
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN)
+        {
+            return (a << 24) | (b << 16) | (g << 8) | r;
+        }
+
+        return (r << 24) | (g << 16) | (b << 8) | a;
+    }
+
+    private static ByteBuffer allocate(int capacity)
+    {
+        // Direct, so that the data can be uploaded to the GPU as is
+        return ByteBuffer.allocateDirect(Math.max(capacity, VERTEX_SIZE * 4)).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buf, int additionalBytes)
+    {
+        if (buf.remaining() >= additionalBytes)
+        {
+            return buf;
+        }
+
+        int newCapacity = Math.max(buf.capacity() * 2, buf.position() + additionalBytes);
+        ByteBuffer newBuf = allocate(newCapacity);
+        buf.flip();
+        newBuf.put(buf);
+
+        return newBuf;
+    }
+
+    /**
+     * Receives the vertex positions of the box geometry, in the draw order
+     */
+    interface IVertexSink
+    {
+        void vertex(double x, double y, double z);
+    }
+}
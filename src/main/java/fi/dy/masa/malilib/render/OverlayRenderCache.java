@@ -0,0 +1,183 @@
+package fi.dy.masa.malilib.render;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.joml.Matrix4f;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.Window;
+
+import fi.dy.masa.malilib.interfaces.ICachedOverlayRenderer;
+
+/**
+ * Renders {@link ICachedOverlayRenderer}s into per-renderer offscreen framebuffers,
+ * and composites the cached result onto the screen on the frames where
+ * the renderer doesn't need to be re-rendered.
+ */
+public class OverlayRenderCache
+{
+    private final Map<ICachedOverlayRenderer, Entry> entries = new IdentityHashMap<>();
+
+    public void render(ICachedOverlayRenderer renderer, DrawContext drawContext, MinecraftClient mc)
+    {
+        Entry entry = this.entries.get(renderer);
+
+        if (entry == null)
+        {
+            entry = new Entry();
+            this.entries.put(renderer, entry);
+        }
+
+        Window window = mc.getWindow();
+        int width = window.getFramebufferWidth();
+        int height = window.getFramebufferHeight();
+        double scale = window.getScaleFactor();
+        long key = renderer.getOverlayInvalidationKey();
+        long now = System.nanoTime();
+
+        if (entry.needsRedraw(renderer, width, height, scale, key, now))
+        {
+            entry.redraw(renderer, drawContext, mc, width, height);
+            entry.scale = scale;
+            entry.key = key;
+            entry.lastRenderTime = now;
+        }
+
+        entry.composite(drawContext);
+    }
+
+    /**
+     * Releases the cached framebuffer of the given renderer, if any
+     * @param renderer
+     */
+    public void remove(ICachedOverlayRenderer renderer)
+    {
+        Entry entry = this.entries.remove(renderer);
+
+        if (entry != null)
+        {
+            entry.delete();
+        }
+    }
+
+    /**
+     * Releases all the cached framebuffers
+     */
+    public void clear()
+    {
+        for (Entry entry : this.entries.values())
+        {
+            entry.delete();
+        }
+
+        this.entries.clear();
+    }
+
+    private static class Entry
+    {
+        @Nullable private SimpleFramebuffer framebuffer;
+        private int width;
+        private int height;
+        private double scale;
+        private long key;
+        private long lastRenderTime;
+
+        private boolean needsRedraw(ICachedOverlayRenderer renderer, int width, int height, double scale, long key, long now)
+        {
+            if (this.framebuffer == null ||
+                this.width != width || this.height != height ||
+                this.scale != scale || this.key != key)
+            {
+                return true;
+            }
+
+            int rate = renderer.getOverlayMaxRefreshRate();
+
+            return rate > 0 && now - this.lastRenderTime >= 1000000000L / rate;
+        }
+
+        private void redraw(ICachedOverlayRenderer renderer, DrawContext drawContext, MinecraftClient mc, int width, int height)
+        {
+            // Flush anything already queued in the draw context to the main framebuffer first
+            drawContext.draw();
+
+            if (this.framebuffer == null)
+            {
+                this.framebuffer = new SimpleFramebuffer(width, height, true, MinecraftClient.IS_SYSTEM_MAC);
+            }
+            else if (this.width != width || this.height != height)
+            {
+                this.framebuffer.resize(width, height, MinecraftClient.IS_SYSTEM_MAC);
+            }
+
+            this.width = width;
+            this.height = height;
+
+            this.framebuffer.setClearColor(0f, 0f, 0f, 0f);
+            this.framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+            this.framebuffer.beginWrite(true);
+
+            renderer.onRenderGameOverlayPost(drawContext);
+            drawContext.draw();
+
+            mc.getFramebuffer().beginWrite(true);
+        }
+
+        private void composite(DrawContext drawContext)
+        {
+            if (this.framebuffer == null)
+            {
+                return;
+            }
+
+            float w = (float) (this.width / this.scale);
+            float h = (float) (this.height / this.scale);
+            Matrix4f matrix = drawContext.getMatrices().peek().getPositionMatrix();
+
+            RenderSystem.setShader(GameRenderer::getPositionTexProgram);
+            RenderSystem.setShaderTexture(0, this.framebuffer.getColorAttachment());
+            RenderSystem.setShaderColor(1f, 1f, 1f, 1f);
+            RenderSystem.disableDepthTest();
+            RenderSystem.enableBlend();
+            // The cached content has its color already multiplied by its alpha
+            RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+
+            Tessellator tessellator = Tessellator.getInstance();
+            BufferBuilder buffer = tessellator.getBuffer();
+            buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+
+            // The framebuffer texture is upside down compared to the GUI coordinates
+            buffer.vertex(matrix, 0f, h , 0f).texture(0f, 0f).next();
+            buffer.vertex(matrix, w , h , 0f).texture(1f, 0f).next();
+            buffer.vertex(matrix, w , 0f, 0f).texture(1f, 1f).next();
+            buffer.vertex(matrix, 0f, 0f, 0f).texture(0f, 1f).next();
+
+            tessellator.draw();
+
+            // Leave the state as the HUD rendering normally has it. Querying the actual
+            // previous state from GL would stall the pipeline, and it isn't tracked in a readable way.
+            RenderSystem.defaultBlendFunc();
+            RenderSystem.disableBlend();
+            RenderSystem.enableDepthTest();
+        }
+
+        private void delete()
+        {
+            if (this.framebuffer != null)
+            {
+                this.framebuffer.delete();
+                this.framebuffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package fi.dy.masa.malilib.render;
+
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.joml.Matrix4f;
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+
+/**
+ * Batches the 2D quads drawn by the {@link RenderUtils} rectangle methods
+ * (drawRect(), drawOutline(), drawOutlinedBox(), drawGradientRect() and drawTexturedRect()).<br>
+ * While a batch is open (between {@link #begin()} and {@link #end()}),
+ * those methods append their quads to a shared buffer instead of issuing one draw call each.
+ * Consecutive quads using the same shader, texture and model-view matrix are drawn with a single draw call,
+ * and the pending quads are flushed whenever the state changes, so the draw order stays the same.<br>
+ * The code that draws with an open batch flushes it explicitly at the batch boundaries:
+ * the {@link RenderUtils} text and shader color methods, and the draw context that
+ * {@link fi.dy.masa.malilib.gui.GuiBase} uses while its batch is open over the rendering of the whole GUI.
+ * Any other drawing that doesn't go via {@link BufferBuilder} quads of this batch, and any other custom
+ * render state changes while a batch is open, must be preceded by a call to {@link #flush()}.
+ */
+public class QuadBatch2D
+{
+    private static final QuadBatch2D INSTANCE = new QuadBatch2D();
+
+    private final BufferBuilder buffer = new BufferBuilder(262144);
+    private final Matrix4f modelViewMatrix = new Matrix4f();
+    @Nullable private Mode mode;
+    private int textureId;
+    private int depth;
+
+    public static QuadBatch2D getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Opens a batch. Batches can be nested, the quads are
+     * only flushed at the end of the outermost batch.
+     * The matching {@link #end()} call should be in a finally block.
+     */
+    public void begin()
+    {
+        ++this.depth;
+    }
+
+    /**
+     * Closes a batch, and draws all the pending quads if this was the outermost batch
+     */
+    public void end()
+    {
+        if (--this.depth <= 0)
+        {
+            this.depth = 0;
+            this.flush();
+        }
+    }
+
+    public boolean isActive()
+    {
+        return this.depth > 0;
+    }
+
+    /**
+     * Returns the buffer to add quads to for the given mode and texture,
+     * flushing the pending quads first if they use a different state.
+     * @param mode
+     * @param textureId the texture id, only used for the {@link Mode#TEXTURE} mode
+     * @return
+     */
+    public BufferBuilder getBuffer(Mode mode, int textureId)
+    {
+        Matrix4f modelViewMatrix = RenderSystem.getModelViewStack().peek().getPositionMatrix();
+
+        if (this.mode != mode ||
+            (mode == Mode.TEXTURE && this.textureId != textureId) ||
+            this.modelViewMatrix.equals(modelViewMatrix) == false)
+        {
+            this.flush();
+            this.buffer.begin(VertexFormat.DrawMode.QUADS, mode.format);
+            this.mode = mode;
+            this.textureId = textureId;
+            this.modelViewMatrix.set(modelViewMatrix);
+        }
+
+        return this.buffer;
+    }
+
+    /**
+     * Draws all the pending quads, if any
+     */
+    public void flush()
+    {
+        if (this.mode == null)
+        {
+            return;
+        }
+
+        Mode mode = this.mode;
+        this.mode = null;
+
+        BufferBuilder.BuiltBuffer builtBuffer = this.buffer.end();
+
+        RenderSystem.setShader(mode.shader);
+
+        if (mode == Mode.TEXTURE)
+        {
+            RenderSystem.setShaderTexture(0, this.textureId);
+        }
+
+        // The model-view matrix may have been changed (but not yet applied) after the quads were added
+        MatrixStack modelViewStack = RenderSystem.getModelViewStack();
+        modelViewStack.push();
+        modelViewStack.peek().getPositionMatrix().set(this.modelViewMatrix);
+        RenderSystem.applyModelViewMatrix();
+        RenderUtils.setupBlend();
+
+        BufferRenderer.drawWithGlobalProgram(builtBuffer);
+
+        modelViewStack.pop();
+        RenderSystem.applyModelViewMatrix();
+
+        // Match the state that the non-batched methods leave behind
+        if (mode == Mode.COLOR)
+        {
+            RenderSystem.disableBlend();
+        }
+    }
+
+    public enum Mode
+    {
+        COLOR   (VertexFormats.POSITION_COLOR,      GameRenderer::getPositionColorProgram),
+        TEXTURE (VertexFormats.POSITION_TEXTURE,    GameRenderer::getPositionTexProgram);
+
+        private final VertexFormat format;
+        private final Supplier<ShaderProgram> shader;
+
+        private Mode(VertexFormat format, Supplier<ShaderProgram> shader)
+        {
+            this.format = format;
+            this.shader = shader;
+        }
+    }
+}
@@ -82,6 +82,8 @@ public class RenderUtils
 
     public static void color(float r, float g, float b, float a)
     {
+        // The pending batched quads get drawn with the shader color that is set when they are flushed
+        QuadBatch2D.getInstance().flush();
         RenderSystem.setShaderColor(r, g, b, a);
     }
 
@@ -109,11 +111,21 @@ public class RenderUtils
 
     public static void drawOutlinedBox(int x, int y, int width, int height, int colorBg, int colorBorder, float zLevel)
     {
-        // Draw the background
-        drawRect(x, y, width, height, colorBg, zLevel);
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        batch.begin();
 
-        // Draw the border
-        drawOutline(x - 1, y - 1, width + 2, height + 2, colorBorder, zLevel);
+        try
+        {
+            // Draw the background
+            drawRect(x, y, width, height, colorBg, zLevel);
+
+            // Draw the border
+            drawOutline(x - 1, y - 1, width + 2, height + 2, colorBorder, zLevel);
+        }
+        finally
+        {
+            batch.end();
+        }
     }
 
     public static void drawOutline(int x, int y, int width, int height, int colorBorder)
@@ -123,10 +135,20 @@ public class RenderUtils
 
     public static void drawOutline(int x, int y, int width, int height, int colorBorder, float zLevel)
     {
-        drawRect(x                    , y,      1, height, colorBorder, zLevel); // left edge
-        drawRect(x + width - 1        , y,      1, height, colorBorder, zLevel); // right edge
-        drawRect(x + 1,              y, width - 2,      1, colorBorder, zLevel); // top edge
-        drawRect(x + 1, y + height - 1, width - 2,      1, colorBorder, zLevel); // bottom edge
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        batch.begin();
+
+        try
+        {
+            drawRect(x                    , y,      1, height, colorBorder, zLevel); // left edge
+            drawRect(x + width - 1        , y,      1, height, colorBorder, zLevel); // right edge
+            drawRect(x + 1,              y, width - 2,      1, colorBorder, zLevel); // top edge
+            drawRect(x + 1, y + height - 1, width - 2,      1, colorBorder, zLevel); // bottom edge
+        }
+        finally
+        {
+            batch.end();
+        }
     }
 
     public static void drawOutline(int x, int y, int width, int height, int borderWidth, int colorBorder)
@@ -136,10 +158,20 @@ public class RenderUtils
 
     public static void drawOutline(int x, int y, int width, int height, int borderWidth, int colorBorder, float zLevel)
     {
-        drawRect(x                      ,                        y, borderWidth            , height     , colorBorder, zLevel); // left edge
-        drawRect(x + width - borderWidth,                        y, borderWidth            , height     , colorBorder, zLevel); // right edge
-        drawRect(x + borderWidth        ,                        y, width - 2 * borderWidth, borderWidth, colorBorder, zLevel); // top edge
-        drawRect(x + borderWidth        , y + height - borderWidth, width - 2 * borderWidth, borderWidth, colorBorder, zLevel); // bottom edge
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        batch.begin();
+
+        try
+        {
+            drawRect(x                      ,                        y, borderWidth            , height     , colorBorder, zLevel); // left edge
+            drawRect(x + width - borderWidth,                        y, borderWidth            , height     , colorBorder, zLevel); // right edge
+            drawRect(x + borderWidth        ,                        y, width - 2 * borderWidth, borderWidth, colorBorder, zLevel); // top edge
+            drawRect(x + borderWidth        , y + height - borderWidth, width - 2 * borderWidth, borderWidth, colorBorder, zLevel); // bottom edge
+        }
+        finally
+        {
+            batch.end();
+        }
     }
 
     public static void drawTexturedRect(int x, int y, int u, int v, int width, int height)
@@ -158,29 +190,50 @@ public class RenderUtils
         float r = (float) (color >> 16 & 255) / 255.0F;
         float g = (float) (color >>  8 & 255) / 255.0F;
         float b = (float) (color & 255) / 255.0F;
-
-        RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        RenderSystem.applyModelViewMatrix();
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        boolean batched = batch.isActive();
         Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.getBuffer();
+        BufferBuilder buffer;
 
-        setupBlend();
+        if (batched)
+        {
+            buffer = batch.getBuffer(QuadBatch2D.Mode.COLOR, 0);
+        }
+        else
+        {
+            RenderSystem.setShader(GameRenderer::getPositionColorProgram);
+            RenderSystem.applyModelViewMatrix();
+            buffer = tessellator.getBuffer();
 
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+            setupBlend();
+
+            buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        }
 
         buffer.vertex(x        , y         , zLevel).color(r, g, b, a).next();
         buffer.vertex(x        , y + height, zLevel).color(r, g, b, a).next();
         buffer.vertex(x + width, y + height, zLevel).color(r, g, b, a).next();
         buffer.vertex(x + width, y         , zLevel).color(r, g, b, a).next();
 
-        tessellator.draw();
+        if (batched == false)
+        {
+            tessellator.draw();
 
-        RenderSystem.disableBlend();
+            RenderSystem.disableBlend();
+        }
     }
 
     public static void drawTexturedRect(int x, int y, int u, int v, int width, int height, float zLevel)
     {
-        float pixelWidth = 0.00390625F;
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+
+        if (batch.isActive())
+        {
+            BufferBuilder buffer = batch.getBuffer(QuadBatch2D.Mode.TEXTURE, RenderSystem.getShaderTexture(0));
+            drawTexturedRectBatched(x, y, u, v, width, height, zLevel, buffer);
+            return;
+        }
+
         RenderSystem.setShader(GameRenderer::getPositionTexProgram);
         RenderSystem.applyModelViewMatrix();
         Tessellator tessellator = Tessellator.getInstance();
@@ -189,10 +242,7 @@ public class RenderUtils
         setupBlend();
         buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
 
-        buffer.vertex(x        , y + height, zLevel).texture( u          * pixelWidth, (v + height) * pixelWidth).next();
-        buffer.vertex(x + width, y + height, zLevel).texture((u + width) * pixelWidth, (v + height) * pixelWidth).next();
-        buffer.vertex(x + width, y         , zLevel).texture((u + width) * pixelWidth,  v           * pixelWidth).next();
-        buffer.vertex(x        , y         , zLevel).texture( u          * pixelWidth,  v           * pixelWidth).next();
+        drawTexturedRectBatched(x, y, u, v, width, height, zLevel, buffer);
 
         tessellator.draw();
     }
@@ -218,6 +268,7 @@ public class RenderUtils
 
         if (textLines.isEmpty() == false && GuiUtils.getCurrentScreen() != null)
         {
+            QuadBatch2D.getInstance().flush();
             RenderSystem.enableDepthTest();
             TextRenderer font = mc.textRenderer;
             int maxLineLength = 0;
@@ -260,18 +311,31 @@ public class RenderUtils
 
             double zLevel = 300;
             int borderColor = 0xF0100010;
-            drawGradientRect(textStartX - 3, textStartY - 4, textStartX + maxLineLength + 3, textStartY - 3, zLevel, borderColor, borderColor);
-            drawGradientRect(textStartX - 3, textStartY + textHeight + 3, textStartX + maxLineLength + 3, textStartY + textHeight + 4, zLevel, borderColor, borderColor);
-            drawGradientRect(textStartX - 3, textStartY - 3, textStartX + maxLineLength + 3, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
-            drawGradientRect(textStartX - 4, textStartY - 3, textStartX - 3, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
-            drawGradientRect(textStartX + maxLineLength + 3, textStartY - 3, textStartX + maxLineLength + 4, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
-
-            int fillColor1 = 0x505000FF;
-            int fillColor2 = 0x5028007F;
-            drawGradientRect(textStartX - 3, textStartY - 3 + 1, textStartX - 3 + 1, textStartY + textHeight + 3 - 1, zLevel, fillColor1, fillColor2);
-            drawGradientRect(textStartX + maxLineLength + 2, textStartY - 3 + 1, textStartX + maxLineLength + 3, textStartY + textHeight + 3 - 1, zLevel, fillColor1, fillColor2);
-            drawGradientRect(textStartX - 3, textStartY - 3, textStartX + maxLineLength + 3, textStartY - 3 + 1, zLevel, fillColor1, fillColor1);
-            drawGradientRect(textStartX - 3, textStartY + textHeight + 2, textStartX + maxLineLength + 3, textStartY + textHeight + 3, zLevel, fillColor2, fillColor2);
+            QuadBatch2D batch = QuadBatch2D.getInstance();
+            batch.begin();
+
+            try
+            {
+                drawGradientRect(textStartX - 3, textStartY - 4, textStartX + maxLineLength + 3, textStartY - 3, zLevel, borderColor, borderColor);
+                drawGradientRect(textStartX - 3, textStartY + textHeight + 3, textStartX + maxLineLength + 3, textStartY + textHeight + 4, zLevel, borderColor, borderColor);
+                drawGradientRect(textStartX - 3, textStartY - 3, textStartX + maxLineLength + 3, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
+                drawGradientRect(textStartX - 4, textStartY - 3, textStartX - 3, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
+                drawGradientRect(textStartX + maxLineLength + 3, textStartY - 3, textStartX + maxLineLength + 4, textStartY + textHeight + 3, zLevel, borderColor, borderColor);
+
+                int fillColor1 = 0x505000FF;
+                int fillColor2 = 0x5028007F;
+                drawGradientRect(textStartX - 3, textStartY - 3 + 1, textStartX - 3 + 1, textStartY + textHeight + 3 - 1, zLevel, fillColor1, fillColor2);
+                drawGradientRect(textStartX + maxLineLength + 2, textStartY - 3 + 1, textStartX + maxLineLength + 3, textStartY + textHeight + 3 - 1, zLevel, fillColor1, fillColor2);
+                drawGradientRect(textStartX - 3, textStartY - 3, textStartX + maxLineLength + 3, textStartY - 3 + 1, zLevel, fillColor1, fillColor1);
+                drawGradientRect(textStartX - 3, textStartY + textHeight + 2, textStartX + maxLineLength + 3, textStartY + textHeight + 3, zLevel, fillColor2, fillColor2);
+            }
+            finally
+            {
+                batch.end();
+            }
+
+            // Draw the background before the text, even if an outer batch is still open
+            batch.flush();
 
             for (int i = 0; i < textLines.size(); ++i)
             {
@@ -301,22 +365,36 @@ public class RenderUtils
         int eg = (endColor >>  8 & 0xFF);
         int eb = (endColor & 0xFF);
 
-        setupBlend();
-        RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        RenderSystem.applyModelViewMatrix();
-
+        QuadBatch2D batch = QuadBatch2D.getInstance();
+        boolean batched = batch.isActive();
         Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.getBuffer();
-        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        BufferBuilder buffer;
+
+        if (batched)
+        {
+            buffer = batch.getBuffer(QuadBatch2D.Mode.COLOR, 0);
+        }
+        else
+        {
+            setupBlend();
+            RenderSystem.setShader(GameRenderer::getPositionColorProgram);
+            RenderSystem.applyModelViewMatrix();
+
+            buffer = tessellator.getBuffer();
+            buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        }
 
         buffer.vertex(right, top,    zLevel).color(sr, sg, sb, sa).next();
         buffer.vertex(left,  top,    zLevel).color(sr, sg, sb, sa).next();
         buffer.vertex(left,  bottom, zLevel).color(er, eg, eb, ea).next();
         buffer.vertex(right, bottom, zLevel).color(er, eg, eb, ea).next();
 
-        tessellator.draw();
+        if (batched == false)
+        {
+            tessellator.draw();
 
-        RenderSystem.disableBlend();
+            RenderSystem.disableBlend();
+        }
     }
 
     public static void drawCenteredString(int x, int y, int color, String text, DrawContext drawContext)
@@ -349,6 +427,9 @@ public class RenderUtils
         String[] parts = text.split("\\\\n");
         TextRenderer textRenderer = mc().textRenderer;
 
+        // Draw any pending batched quads below the text
+        QuadBatch2D.getInstance().flush();
+
         for (String line : parts)
         {
             drawContext.drawText(textRenderer, line, x, y, color, true);
@@ -361,6 +442,7 @@ public class RenderUtils
         if (lines.isEmpty() == false)
         {
             TextRenderer textRenderer = mc().textRenderer;
+            QuadBatch2D.getInstance().flush();
 
             for (String line : lines)
             {
@@ -431,6 +513,7 @@ public class RenderUtils
             if (useBackground)
             {
                 drawRect(x - bgMargin, y - bgMargin, width + bgMargin, bgMargin + fontRenderer.fontHeight, bgColor);
+                QuadBatch2D.getInstance().flush();
             }
 
             drawContext.drawText(fontRenderer, line, x, y, textColor, useShadow);
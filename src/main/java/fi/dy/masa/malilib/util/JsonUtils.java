@@ -1,13 +1,29 @@
 package fi.dy.masa.malilib.util;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.google.gson.Gson;
@@ -16,6 +32,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import fi.dy.masa.malilib.MaLiLib;
@@ -23,6 +40,7 @@ import fi.dy.masa.malilib.MaLiLib;
 public class JsonUtils
 {
     public static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Map<File, FileHash> WRITTEN_FILE_HASHES = new ConcurrentHashMap<>();
 
     @Nullable
     public static JsonObject getNestedObject(JsonObject parent, String key, boolean create)
@@ -400,7 +418,7 @@ public class JsonUtils
         {
             String fileName = file.getAbsolutePath();
 
-            try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
             {
                 return JsonParser.parseReader(reader);
             }
@@ -413,32 +431,219 @@ public class JsonUtils
         return null;
     }
 
+    /**
+     * Writes the given JSON data to the given file, via a temporary file.
+     * If the file already has the exact same contents, then it is not rewritten.
+     * @return true if the file now contains the data
+     */
     public static boolean writeJsonToFile(JsonObject root, File file)
     {
-        File fileTmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        return writeJsonToFile(root, file, false);
+    }
 
-        if (fileTmp.exists())
-        {
-            fileTmp = new File(file.getParentFile(), UUID.randomUUID() + ".tmp");
-        }
+    /**
+     * Writes the given JSON data to the given file. The data is streamed into a temporary file,
+     * which then atomically replaces the target file, so the file always exists
+     * with either the old or the new contents.
+     * If the file already has the exact same contents, then it is not rewritten.
+     * @param sync if true, then the data is forced to the storage device before replacing the file
+     * @return true if the file now contains the data
+     */
+    public static boolean writeJsonToFile(JsonObject root, File file, boolean sync)
+    {
+        Path target = file.toPath();
+        Path fileTmp = null;
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(fileTmp), StandardCharsets.UTF_8))
+        try
         {
-            writer.write(GSON.toJson(root));
-            writer.close();
+            MessageDigest digest = createDigest();
+            byte[] hash = null;
+
+            // The serialized data is hashed first, so that the temporary file
+            // is only created if the existing file doesn't already have the exact same contents
+            if (digest != null)
+            {
+                HashingOutputStream hashOut = new HashingOutputStream(digest);
+                writeJson(root, hashOut);
+                hash = digest.digest();
 
-            if (file.exists() && file.isFile() && file.delete() == false)
+                if (fileHasContent(file, hashOut.length, hash))
+                {
+                    return true;
+                }
+            }
+
+            fileTmp = target.resolveSibling(file.getName() + ".tmp");
+
+            if (Files.exists(fileTmp))
             {
-                MaLiLib.logger.warn("Failed to delete file '{}'", file.getAbsolutePath());
+                fileTmp = target.resolveSibling(UUID.randomUUID() + ".tmp");
             }
 
-            return fileTmp.renameTo(file);
+            try (FileChannel channel = FileChannel.open(fileTmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                writeJson(root, Channels.newOutputStream(channel));
+
+                if (sync)
+                {
+                    channel.force(true);
+                }
+            }
+
+            moveFile(fileTmp, target);
+
+            if (hash != null)
+            {
+                WRITTEN_FILE_HASHES.put(file.getAbsoluteFile(), new FileHash(file, hash));
+            }
+
+            return true;
         }
         catch (Exception e)
         {
-            MaLiLib.logger.warn("Failed to write JSON data to file '{}'", fileTmp.getAbsolutePath(), e);
+            MaLiLib.logger.warn("Failed to write JSON data to file '{}'", file.getAbsolutePath(), e);
+
+            if (fileTmp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(fileTmp);
+                }
+                catch (Exception ignore) {}
+            }
         }
 
         return false;
     }
+
+    private static void writeJson(JsonObject root, OutputStream out) throws IOException
+    {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonWriter jsonWriter = GSON.newJsonWriter(writer);
+
+        GSON.toJson(root, jsonWriter);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Moves the source file to the target, replacing the target file if it exists.
+     * The move is done atomically if the file system supports it.
+     */
+    public static void moveFile(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns true if the given file has not been modified since it was last written via {@link #writeJsonToFile(JsonObject, File)}
+     */
+    public static boolean isUnmodifiedSinceWrite(File file)
+    {
+        FileHash cached = WRITTEN_FILE_HASHES.get(file.getAbsoluteFile());
+        return cached != null && cached.matches(file);
+    }
+
+    /**
+     * Checks if the file on disk has the given contents.
+     * The hash of the last written contents is cached, so if the file has not been
+     * modified since it was last written by us, the file doesn't need to be read.
+     */
+    private static boolean fileHasContent(File file, long length, byte[] hash)
+    {
+        if (file.isFile() == false || file.length() != length)
+        {
+            return false;
+        }
+
+        FileHash cached = WRITTEN_FILE_HASHES.get(file.getAbsoluteFile());
+
+        if (cached != null && cached.matches(file))
+        {
+            return Arrays.equals(cached.hash, hash);
+        }
+
+        MessageDigest digest = createDigest();
+
+        if (digest == null)
+        {
+            return false;
+        }
+
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest))
+        {
+            in.transferTo(OutputStream.nullOutputStream());
+            return Arrays.equals(digest.digest(), hash);
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Only updates the digest and counts the bytes written, without storing the data
+     */
+    private static class HashingOutputStream extends OutputStream
+    {
+        private final MessageDigest digest;
+        private long length;
+
+        private HashingOutputStream(MessageDigest digest)
+        {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            this.digest.update((byte) b);
+            ++this.length;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            this.digest.update(b, off, len);
+            this.length += len;
+        }
+    }
+
+    private static class FileHash
+    {
+        private final long length;
+        private final long lastModified;
+        private final byte[] hash;
+
+        private FileHash(File file, byte[] hash)
+        {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.hash = hash;
+        }
+
+        private boolean matches(File file)
+        {
+            return file.length() == this.length && file.lastModified() == this.lastModified;
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package fi.dy.masa.malilib.util;
+
+import java.util.Arrays;
+
+/**
+ * A rolling window of duration samples (in nanoseconds).
+ * Adding samples is constant time and doesn't allocate, the percentiles
+ * are only calculated (by sorting a copy of the window) when queried.
+ */
+public class TimingHistogram
+{
+    public static final int DEFAULT_WINDOW_SIZE = 512;
+
+    private final long[] samples;
+    private final boolean synchronizedAdd;
+    private int nextIndex;
+    private int windowCount;
+    private long totalCount;
+    private long totalTime;
+    private long maxTime;
+
+    public TimingHistogram()
+    {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public TimingHistogram(int windowSize)
+    {
+        this(windowSize, true);
+    }
+
+    /**
+     * @param windowSize
+     * @param synchronizedAdd if false, then {@link #addSample(long)} doesn't lock,
+     * and the samples must only ever be added from one thread
+     */
+    public TimingHistogram(int windowSize, boolean synchronizedAdd)
+    {
+        this.samples = new long[windowSize];
+        this.synchronizedAdd = synchronizedAdd;
+    }
+
+    public void addSample(long durationNanos)
+    {
+        if (this.synchronizedAdd)
+        {
+            synchronized (this)
+            {
+                this.add(durationNanos);
+            }
+        }
+        else
+        {
+            this.add(durationNanos);
+        }
+    }
+
+    private void add(long durationNanos)
+    {
+        this.samples[this.nextIndex] = durationNanos;
+
+        if (++this.nextIndex >= this.samples.length)
+        {
+            this.nextIndex = 0;
+        }
+
+        if (this.windowCount < this.samples.length)
+        {
+            ++this.windowCount;
+        }
+
+        ++this.totalCount;
+        this.totalTime += durationNanos;
+
+        if (durationNanos > this.maxTime)
+        {
+            this.maxTime = durationNanos;
+        }
+    }
+
+    /**
+     * Returns the total number of samples recorded, including the ones
+     * that have already dropped out of the rolling window
+     */
+    public synchronized long getTotalCount()
+    {
+        return this.totalCount;
+    }
+
+    /**
+     * Returns the all-time average duration in nanoseconds
+     */
+    public synchronized long getAverage()
+    {
+        return this.totalCount > 0 ? this.totalTime / this.totalCount : 0L;
+    }
+
+    /**
+     * Returns the all-time maximum duration in nanoseconds
+     */
+    public synchronized long getMax()
+    {
+        return this.maxTime;
+    }
+
+    /**
+     * Returns the percentiles of the samples in the current window, in nanoseconds
+     * @param percentiles the requested percentiles, in the range 0.0 - 1.0
+     * @return the values, in the same order as the requested percentiles
+     */
+    public long[] getPercentiles(double... percentiles)
+    {
+        long[] sorted;
+
+        synchronized (this)
+        {
+            sorted = Arrays.copyOf(this.samples, this.windowCount);
+        }
+
+        long[] values = new long[percentiles.length];
+
+        if (sorted.length > 0)
+        {
+            Arrays.sort(sorted);
+
+            for (int i = 0; i < percentiles.length; ++i)
+            {
+                int index = (int) Math.ceil(percentiles[i] * sorted.length) - 1;
+                values[i] = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+            }
+        }
+
+        return values;
+    }
+
+    public synchronized void clear()
+    {
+        this.nextIndex = 0;
+        this.windowCount = 0;
+        this.totalCount = 0;
+        this.totalTime = 0;
+        this.maxTime = 0;
+    }
+}
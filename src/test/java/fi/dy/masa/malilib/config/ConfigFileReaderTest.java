@@ -0,0 +1,169 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fi.dy.masa.malilib.config.options.ConfigBoolean;
+import fi.dy.masa.malilib.config.options.ConfigInteger;
+import fi.dy.masa.malilib.config.options.ConfigString;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads config files via the {@link ConfigFileReader} and checks the dirty tracking
+ * of the {@link ConfigManager}, without any game context.
+ */
+public class ConfigFileReaderTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void valuesAreBoundToOptions() throws IOException
+    {
+        ConfigBoolean bool = new ConfigBoolean("bool", false, "");
+        ConfigInteger integer = new ConfigInteger("int", 5, "");
+        ConfigString string = new ConfigString("string", "default", "");
+        ConfigString missing = new ConfigString("missing", "default", "");
+        ConfigFileReader reader = new ConfigFileReader().addConfigs("Generic", List.of(bool, integer, string, missing));
+        File file = this.writeJson("test.json", "{" +
+                                                "\"Unknown\":{\"bool\":false,\"nested\":{\"a\":[1,2,{}]}}," +
+                                                "\"Generic\":{\"unknown\":[1,2,3],\"bool\":true,\"int\":42,\"string\":\"value\"}," +
+                                                "\"Other\":5}");
+
+        assertTrue(reader.read(file));
+        assertTrue(bool.getBooleanValue());
+        assertEquals(42, integer.getIntegerValue());
+        assertEquals("value", string.getStringValue());
+        assertEquals("default", missing.getStringValue());
+    }
+
+    @Test
+    public void sameNameInDifferentCategories() throws IOException
+    {
+        ConfigBoolean first = new ConfigBoolean("enabled", false, "");
+        ConfigBoolean second = new ConfigBoolean("enabled", false, "");
+        ConfigFileReader reader = new ConfigFileReader()
+                                          .addConfigs("First", List.of(first))
+                                          .addConfigs("Second", List.of(second));
+        File file = this.writeJson("test.json", "{\"First\":{\"enabled\":false},\"Second\":{\"enabled\":true}}");
+
+        assertTrue(reader.read(file));
+        assertFalse(first.getBooleanValue());
+        assertTrue(second.getBooleanValue());
+    }
+
+    @Test
+    public void missingFileIsInvalid()
+    {
+        ConfigFileReader reader = new ConfigFileReader().addConfigs("Generic", List.of(new ConfigBoolean("bool", false, "")));
+
+        assertFalse(reader.read(this.tempDir.resolve("missing.json").toFile()));
+    }
+
+    @Test
+    public void onlyChangedValuesAreApplied() throws IOException
+    {
+        ConfigBoolean bool = new ConfigBoolean("bool", false, "");
+        ConfigInteger integer = new ConfigInteger("int", 5, "");
+        ConfigFileReader reader = new ConfigFileReader().addConfigs("Generic", List.of(bool, integer));
+        File file = this.writeJson("test.json", "{\"Generic\":{\"bool\":true,\"int\":5}}");
+
+        ConfigFileReader.ChangeSet changes = reader.parse(file, false).applyChanged();
+
+        assertEquals(List.of(bool), changes.getChangedValues());
+        assertTrue(changes.getChangedHotkeys().isEmpty());
+        assertTrue(reader.parse(file, false).applyChanged().isEmpty());
+    }
+
+    @Test
+    public void unchangedHandlersAreNotSaved() throws IOException
+    {
+        ConfigManager manager = (ConfigManager) ConfigManager.getInstance();
+        ConfigBoolean trackedOption = new ConfigBoolean("bool", false, "");
+        ConfigBoolean untrackedOption = new ConfigBoolean("bool", false, "");
+        String json = "{\"Generic\":{\"bool\":true}}";
+        TestHandler tracked = new TestHandler(this.writeJson("tracked.json", json), trackedOption, true);
+        TestHandler untracked = new TestHandler(this.writeJson("untracked.json", json), untrackedOption, false);
+
+        manager.registerConfigHandler("malilib_test_tracked", tracked);
+        manager.registerConfigHandler("malilib_test_untracked", untracked);
+        manager.loadAllConfigs();
+
+        assertTrue(trackedOption.getBooleanValue());
+
+        manager.saveAllConfigs();
+        assertEquals(0, tracked.saveCount);
+        assertEquals(1, untracked.saveCount);
+
+        // Changing a value marks only the handler that loaded the option as dirty
+        trackedOption.setBooleanValue(false);
+        manager.saveAllConfigs();
+        assertEquals(1, tracked.saveCount);
+        assertEquals(2, untracked.saveCount);
+
+        manager.saveAllConfigs();
+        assertEquals(1, tracked.saveCount);
+        assertEquals(3, untracked.saveCount);
+    }
+
+    private File writeJson(String name, String json) throws IOException
+    {
+        File file = this.tempDir.resolve(name).toFile();
+        Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static class TestHandler implements IConfigHandler
+    {
+        private final File file;
+        private final ConfigFileReader reader;
+        private final boolean dirtyTracking;
+        private int saveCount;
+
+        private TestHandler(File file, ConfigBoolean option, boolean dirtyTracking)
+        {
+            this.file = file;
+            this.reader = new ConfigFileReader().addConfigs("Generic", List.of(option));
+            this.dirtyTracking = dirtyTracking;
+        }
+
+        @Override
+        public void load()
+        {
+            this.reader.read(this.file);
+        }
+
+        @Override
+        public void save()
+        {
+            ++this.saveCount;
+        }
+
+        @Override
+        public File getConfigFile()
+        {
+            return this.file;
+        }
+
+        @Override
+        public ConfigFileReader getConfigReader()
+        {
+            return this.reader;
+        }
+
+        @Override
+        public boolean supportsDirtyTracking()
+        {
+            return this.dirtyTracking;
+        }
+    }
+}
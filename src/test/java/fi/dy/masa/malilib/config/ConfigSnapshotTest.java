@@ -0,0 +1,179 @@
+package fi.dy.masa.malilib.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.config.options.ConfigString;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Writes and reads back the binary {@link ConfigSnapshot}s, without any game context.
+ */
+public class ConfigSnapshotTest
+{
+    private static final String JSON = "{\"Generic\":{" +
+                                       "\"bool\":true," +
+                                       "\"int\":42," +
+                                       "\"double\":0.125," +
+                                       "\"big\":123456789012345678901234567890," +
+                                       "\"string\":\"\u00e4 \\\"quoted\\\"\"," +
+                                       "\"list\":[\"a\",\"b\"]," +
+                                       "\"obj\":{\"keys\":\"A,B\",\"settings\":{\"activateOn\":\"PRESS\"}}," +
+                                       "\"null\":null," +
+                                       "\"unknown\":1}," +
+                                       "\"Unknown\":{\"bool\":false}}";
+    private static final String[] OPTIONS = { "bool", "int", "double", "big", "string", "list", "obj", "null" };
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    public void cleanup()
+    {
+        MaLiLibConfigs.Generic.CONFIG_SNAPSHOT_CACHE.setBooleanValue(false);
+    }
+
+    @Test
+    public void roundTrip() throws IOException
+    {
+        File file = this.writeJson(JSON);
+        ConfigFileReader reader = createReader(OPTIONS);
+        ConfigFileReader.ParsedValues values = reader.parse(file, false);
+
+        ConfigSnapshot.write(file, file.length(), file.lastModified(), reader, values);
+
+        ConfigFileReader.ParsedValues snapshot = reader.new ParsedValues();
+
+        assertTrue(ConfigSnapshot.read(file, reader, snapshot));
+        assertEquals(OPTIONS.length, values.size());
+        assertEquals(values.size(), snapshot.size());
+
+        for (int i = 0; i < values.size(); ++i)
+        {
+            assertEquals(values.getIndex(i), snapshot.getIndex(i));
+            assertEquals(values.getElement(i), snapshot.getElement(i));
+        }
+
+        // The numbers read back exactly as they were in the JSON file
+        assertEquals("0.125", findValue(snapshot, 2));
+        assertEquals("123456789012345678901234567890", findValue(snapshot, 3));
+    }
+
+    @Test
+    public void changedJsonFileIsNotReadFromSnapshot() throws IOException
+    {
+        File file = this.writeJson(JSON);
+        ConfigFileReader reader = createReader(OPTIONS);
+        ConfigFileReader.ParsedValues values = reader.parse(file, false);
+
+        ConfigSnapshot.write(file, file.length(), file.lastModified() - 2000L, reader, values);
+        assertFalse(ConfigSnapshot.read(file, reader, reader.new ParsedValues()));
+
+        ConfigSnapshot.write(file, file.length() + 1, file.lastModified(), reader, values);
+        assertFalse(ConfigSnapshot.read(file, reader, reader.new ParsedValues()));
+    }
+
+    @Test
+    public void invalidSnapshotIsRejected() throws IOException
+    {
+        File file = this.writeJson(JSON);
+        File snapshotFile = ConfigSnapshot.getSnapshotFile(file);
+        ConfigFileReader reader = createReader("string");
+        ConfigFileReader.ParsedValues values = reader.parse(file, false);
+
+        Files.write(snapshotFile.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertFalse(ConfigSnapshot.read(file, reader, reader.new ParsedValues()));
+
+        // Truncated data
+        ConfigSnapshot.write(file, file.length(), file.lastModified(), reader, values);
+        byte[] data = Files.readAllBytes(snapshotFile.toPath());
+        Files.write(snapshotFile.toPath(), Arrays.copyOf(data, data.length - 3));
+        ConfigFileReader.ParsedValues snapshot = reader.new ParsedValues();
+
+        assertFalse(ConfigSnapshot.read(file, reader, snapshot));
+        assertEquals(0, snapshot.size());
+
+        // A string length larger than the whole snapshot file must not get allocated.
+        // The header is 36 bytes, followed by the option index and the type of the first value.
+        ByteBuffer.wrap(data).putInt(36 + 4 + 1, Integer.MAX_VALUE);
+        Files.write(snapshotFile.toPath(), data);
+
+        assertFalse(ConfigSnapshot.read(file, reader, reader.new ParsedValues()));
+    }
+
+    @Test
+    public void schemaHashMismatchFallsBackToJson() throws IOException
+    {
+        File file = this.writeJson(JSON);
+        ConfigFileReader reader = createReader(OPTIONS);
+        ConfigFileReader otherReader = createReader("int", "bool");
+
+        assertTrue(reader.getSchemaHash() != otherReader.getSchemaHash());
+
+        ConfigSnapshot.write(file, file.length(), file.lastModified(), reader, reader.parse(file, false));
+
+        ConfigFileReader.ParsedValues snapshot = otherReader.new ParsedValues();
+        assertFalse(ConfigSnapshot.read(file, otherReader, snapshot));
+        assertEquals(0, snapshot.size());
+
+        // With the snapshot cache enabled, the JSON file gets parsed instead, and the snapshot is regenerated
+        MaLiLibConfigs.Generic.CONFIG_SNAPSHOT_CACHE.setBooleanValue(true);
+        ConfigFileReader.ParsedValues values = otherReader.parse(file);
+
+        assertTrue(values.isValid());
+        assertEquals(2, values.size());
+        assertEquals("42", findValue(values, 0));
+        assertTrue(ConfigSnapshot.read(file, otherReader, otherReader.new ParsedValues()));
+    }
+
+    private File writeJson(String json) throws IOException
+    {
+        File file = this.tempDir.resolve("test.json").toFile();
+        Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static ConfigFileReader createReader(String... names)
+    {
+        List<ConfigString> options = new ArrayList<>();
+
+        for (String name : names)
+        {
+            options.add(new ConfigString(name, "", ""));
+        }
+
+        return new ConfigFileReader().addConfigs("Generic", options);
+    }
+
+    /**
+     * Returns the string form of the parsed value of the option with the given index.
+     * The option indices are assigned in the order the options were added to the reader.
+     */
+    private static String findValue(ConfigFileReader.ParsedValues values, int optionIndex)
+    {
+        for (int i = 0; i < values.size(); ++i)
+        {
+            if (values.getIndex(i) == optionIndex)
+            {
+                return values.getElement(i).getAsString();
+            }
+        }
+
+        return fail("No value for the option index " + optionIndex);
+    }
+}
@@ -0,0 +1,309 @@
+package fi.dy.masa.malilib.network;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.listener.PacketListener;
+import net.minecraft.network.listener.ServerPlayPacketListener;
+import net.minecraft.util.Identifier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends payloads through the split framing and chunking, and feeds the chunks
+ * straight back into the receiving side, without any network connection.
+ */
+public class PacketSplitterLoopbackTest
+{
+    private static final Identifier CHANNEL = new Identifier("malilib", "test");
+
+    @AfterEach
+    public void cleanup()
+    {
+        PayloadCompression.disable(CHANNEL);
+        PacketSplitter.getServerReadingSessions().clear();
+        PacketSplitter.getClientReadingSessions().clear();
+    }
+
+    @Test
+    public void singleChunkPayload()
+    {
+        byte[] data = randomBytes(100, 1);
+        Loopback loopback = new Loopback(new ReadingSessionManager(1 << 20));
+
+        List<byte[]> received = loopback.send(data, PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S);
+
+        assertEquals(1, loopback.sentPackets);
+        assertEquals(1, received.size());
+        assertArrayEquals(data, received.get(0));
+    }
+
+    @Test
+    public void multiChunkPayload()
+    {
+        byte[] data = randomBytes(3 * PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S + 123, 2);
+        Loopback loopback = new Loopback(new ReadingSessionManager(1 << 20));
+
+        List<byte[]> received = loopback.send(data, PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S);
+
+        assertEquals(4, loopback.sentPackets);
+        assertEquals(1, received.size());
+        assertArrayEquals(data, received.get(0));
+        assertEquals(0, loopback.sessions.getInFlightBytes());
+    }
+
+    @Test
+    public void consecutivePayloads()
+    {
+        Loopback loopback = new Loopback(new ReadingSessionManager(1 << 20));
+
+        for (int i = 0; i < 5; ++i)
+        {
+            byte[] data = randomBytes(1000 * (i + 1), i);
+            List<byte[]> received = loopback.send(data, 1024);
+
+            assertEquals(1, received.size());
+            assertArrayEquals(data, received.get(0));
+        }
+    }
+
+    @Test
+    public void serverReceivePath()
+    {
+        byte[] data = randomBytes(2 * PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S + 1, 3);
+        ServerPlayPacketListener connection = createConnection(ServerPlayPacketListener.class);
+        ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+        List<byte[]> received = new ArrayList<>();
+
+        PacketSplitter.split(framed, PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S, chunk -> {
+            PacketByteBuf payload = PacketSplitter.receive(connection, CHANNEL, chunk);
+
+            if (payload != null)
+            {
+                received.add(readAndRelease(payload));
+            }
+
+            chunk.release();
+        });
+
+        framed.release();
+
+        assertEquals(1, received.size());
+        assertArrayEquals(data, received.get(0));
+    }
+
+    @Test
+    public void clientReceivePath()
+    {
+        byte[] data = randomBytes(2 * PacketSplitter.MAX_PAYLOAD_PER_PACKET_S2C + 1, 7);
+        ClientPlayPacketListener connection = createConnection(ClientPlayPacketListener.class);
+        ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+        List<byte[]> received = new ArrayList<>();
+        int[] sentPackets = new int[1];
+
+        PacketSplitter.split(framed, PacketSplitter.MAX_PAYLOAD_PER_PACKET_S2C, chunk -> {
+            ++sentPackets[0];
+            PacketByteBuf payload = PacketSplitter.receive(connection, CHANNEL, chunk);
+
+            if (payload != null)
+            {
+                received.add(readAndRelease(payload));
+            }
+
+            chunk.release();
+        });
+
+        framed.release();
+
+        assertEquals(3, sentPackets[0]);
+        assertEquals(1, received.size());
+        assertArrayEquals(data, received.get(0));
+        assertEquals(0, PacketSplitter.getClientReadingSessions().getInFlightBytes());
+    }
+
+    @Test
+    public void compressedPayload()
+    {
+        byte[] data = new byte[100000];
+        PayloadCompression.enable(CHANNEL, PayloadCompression.DEFAULT_THRESHOLD);
+        ServerPlayPacketListener connection = createConnection(ServerPlayPacketListener.class);
+        ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+        List<byte[]> received = new ArrayList<>();
+        int[] sentPackets = new int[1];
+
+        PacketSplitter.split(framed, PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S, chunk -> {
+            ++sentPackets[0];
+            PacketByteBuf payload = PacketSplitter.receive(connection, CHANNEL, chunk);
+
+            if (payload != null)
+            {
+                received.add(readAndRelease(payload));
+            }
+
+            chunk.release();
+        });
+
+        framed.release();
+
+        // All zeroes compress into a single chunk
+        assertEquals(1, sentPackets[0]);
+        assertEquals(1, received.size());
+        assertArrayEquals(data, received.get(0));
+    }
+
+    @Test
+    public void compressedFramingIsDecodedWithoutLocalSetting()
+    {
+        byte[] compressible = new byte[100000];
+        byte[] incompressible = randomBytes(1000, 6);
+        ServerPlayPacketListener connection = createConnection(ServerPlayPacketListener.class);
+
+        PayloadCompression.enable(CHANNEL, PayloadCompression.DEFAULT_THRESHOLD);
+        ByteBuf framedCompressed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(compressible)));
+        ByteBuf framedUncompressed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(incompressible)));
+
+        // The receiving side only needs to recognize the framing, compression is only enabled for sending
+        PayloadCompression.disable(CHANNEL);
+        ByteBuf framedPlain = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(incompressible)));
+
+        assertArrayEquals(compressible, receiveFramed(connection, framedCompressed));
+        assertArrayEquals(incompressible, receiveFramed(connection, framedUncompressed));
+        assertArrayEquals(incompressible, receiveFramed(connection, framedPlain));
+    }
+
+    @Test
+    public void oversizedPayloadIsRejected()
+    {
+        byte[] data = randomBytes(PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_C2S + 1, 4);
+        ServerPlayPacketListener connection = createConnection(ServerPlayPacketListener.class);
+        ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+        PacketByteBuf chunk = new PacketByteBuf(framed.readRetainedSlice(PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S));
+
+        assertThrows(IllegalArgumentException.class, () -> PacketSplitter.receive(connection, CHANNEL, chunk));
+
+        chunk.release();
+        framed.release();
+    }
+
+    @Test
+    public void disconnectAbortsSessions()
+    {
+        byte[] data = randomBytes(10000, 5);
+        Loopback loopback = new Loopback(new ReadingSessionManager(1 << 20));
+        ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+        PacketByteBuf chunk = new PacketByteBuf(framed.readRetainedSlice(1000));
+
+        assertNull(loopback.sessions.receive(loopback.connection, CHANNEL, chunk, Integer.MAX_VALUE));
+        assertTrue(loopback.sessions.getInFlightBytes() > 0);
+
+        loopback.sessions.onDisconnect(loopback.connection);
+
+        assertEquals(0, loopback.sessions.getInFlightBytes());
+
+        chunk.release();
+        framed.release();
+    }
+
+    private static byte[] receiveFramed(ServerPlayPacketListener connection, ByteBuf framed)
+    {
+        List<byte[]> received = new ArrayList<>();
+
+        PacketSplitter.split(framed, PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S, chunk -> {
+            PacketByteBuf payload = PacketSplitter.receive(connection, CHANNEL, chunk);
+
+            if (payload != null)
+            {
+                received.add(readAndRelease(payload));
+            }
+
+            chunk.release();
+        });
+
+        framed.release();
+
+        assertEquals(1, received.size());
+        return received.get(0);
+    }
+
+    private static byte[] randomBytes(int length, long seed)
+    {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAndRelease(PacketByteBuf buf)
+    {
+        byte[] data = new byte[buf.readableBytes()];
+        buf.readBytes(data);
+        buf.release();
+        return data;
+    }
+
+    /**
+     * The reading sessions only use the connection as an identity key
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends PacketListener> T createConnection(Class<T> clazz)
+    {
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, (proxy, method, args) -> {
+            return switch (method.getName())
+            {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "LoopbackConnection";
+                default -> null;
+            };
+        });
+    }
+
+    private static class Loopback
+    {
+        private final ReadingSessionManager sessions;
+        private final PacketListener connection = createConnection(PacketListener.class);
+        private int sentPackets;
+
+        private Loopback(ReadingSessionManager sessions)
+        {
+            this.sessions = sessions;
+        }
+
+        private List<byte[]> send(byte[] data, int payloadLimit)
+        {
+            List<byte[]> received = new ArrayList<>();
+            ByteBuf framed = PacketSplitter.frame(CHANNEL, new PacketByteBuf(Unpooled.wrappedBuffer(data)));
+
+            PacketSplitter.split(framed, payloadLimit, chunk -> {
+                ++this.sentPackets;
+
+                while (chunk.isReadable())
+                {
+                    PacketByteBuf payload = this.sessions.receive(this.connection, CHANNEL, chunk, Integer.MAX_VALUE);
+
+                    if (payload != null)
+                    {
+                        received.add(readAndRelease(payload));
+                    }
+                }
+
+                chunk.release();
+            });
+
+            framed.release();
+
+            return received;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package fi.dy.masa.malilib.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import fi.dy.masa.malilib.util.Color4f;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the vertex data written by the {@link BoxMeshBuilder}, without any rendering context.
+ */
+public class BoxMeshBuilderTest
+{
+    private static final Color4f SIDE_COLOR = new Color4f(1f, 0.5f, 0f, 0.25f);
+    private static final Color4f EDGE_COLOR = new Color4f(0f, 0f, 1f, 1f);
+
+    @Test
+    public void emptyBuilder()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        assertEquals(0, builder.getQuadVertexCount());
+        assertEquals(0, builder.getLineVertexCount());
+        assertEquals(0, builder.getQuadData().remaining());
+        assertEquals(0, builder.getLineData().remaining());
+    }
+
+    @Test
+    public void vertexCounts()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        builder.addBox(0, 0, 0, 1, 1, 1, SIDE_COLOR, EDGE_COLOR);
+        builder.addBox(2, 0, 0, 3, 1, 1, SIDE_COLOR, null);
+        builder.addBox(4, 0, 0, 5, 1, 1, null, EDGE_COLOR);
+
+        assertEquals(2 * BoxMeshBuilder.VERTICES_PER_BOX_SIDES, builder.getQuadVertexCount());
+        assertEquals(2 * BoxMeshBuilder.VERTICES_PER_BOX_EDGES, builder.getLineVertexCount());
+        assertEquals(2 * BoxMeshBuilder.VERTICES_PER_BOX_SIDES * BoxMeshBuilder.VERTEX_SIZE, builder.getQuadData().remaining());
+        assertEquals(2 * BoxMeshBuilder.VERTICES_PER_BOX_EDGES * BoxMeshBuilder.VERTEX_SIZE, builder.getLineData().remaining());
+    }
+
+    @Test
+    public void positionsAreRelativeToOrigin()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(30000000, 64, -30000000);
+
+        builder.addBox(30000010, 70, -29999990, 30000012, 75, -29999980, SIDE_COLOR, null);
+
+        // The first vertex of the sides is the west side min corner
+        ByteBuffer data = builder.getQuadData();
+        assertEquals(10f, data.getFloat(0));
+        assertEquals(6f, data.getFloat(4));
+        assertEquals(10f, data.getFloat(8));
+    }
+
+    @Test
+    public void blockBoxIncludesMaxBlock()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        builder.addBlockBox(0, 0, 0, 2, 3, 4, null, EDGE_COLOR);
+
+        float[] max = new float[3];
+        ByteBuffer data = builder.getLineData();
+
+        for (int i = 0; i < builder.getLineVertexCount(); ++i)
+        {
+            int offset = i * BoxMeshBuilder.VERTEX_SIZE;
+
+            for (int axis = 0; axis < 3; ++axis)
+            {
+                max[axis] = Math.max(max[axis], data.getFloat(offset + axis * 4));
+            }
+        }
+
+        assertEquals(3f, max[0]);
+        assertEquals(4f, max[1]);
+        assertEquals(5f, max[2]);
+    }
+
+    @Test
+    public void colorBytesAreRgba()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        builder.addBox(0, 0, 0, 1, 1, 1, SIDE_COLOR, null);
+
+        ByteBuffer data = builder.getQuadData();
+
+        for (int i = 0; i < builder.getQuadVertexCount(); ++i)
+        {
+            int offset = i * BoxMeshBuilder.VERTEX_SIZE + 12;
+
+            assertEquals(255, data.get(offset) & 0xFF);
+            assertEquals(127, data.get(offset + 1) & 0xFF);
+            assertEquals(0, data.get(offset + 2) & 0xFF);
+            assertEquals(63, data.get(offset + 3) & 0xFF);
+        }
+    }
+
+    @Test
+    public void matchesSharedBoxGeometry()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+        List<float[]> sides = new ArrayList<>();
+        List<float[]> edges = new ArrayList<>();
+
+        builder.addBox(1, 2, 3, 4, 5, 6, SIDE_COLOR, EDGE_COLOR);
+        BoxMeshBuilder.writeSides(1, 2, 3, 4, 5, 6, (x, y, z) -> sides.add(new float[] { (float) x, (float) y, (float) z }));
+        BoxMeshBuilder.writeEdges(1, 2, 3, 4, 5, 6, (x, y, z) -> edges.add(new float[] { (float) x, (float) y, (float) z }));
+
+        assertPositions(sides, builder.getQuadData());
+        assertPositions(edges, builder.getLineData());
+    }
+
+    @Test
+    public void growsBeyondExpectedBoxCount()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0, 1);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            builder.addBox(i, 0, 0, i + 1, 1, 1, SIDE_COLOR, EDGE_COLOR);
+        }
+
+        assertEquals(100 * BoxMeshBuilder.VERTICES_PER_BOX_SIDES, builder.getQuadVertexCount());
+        assertEquals(100 * BoxMeshBuilder.VERTICES_PER_BOX_EDGES, builder.getLineVertexCount());
+
+        // The first box survives the buffer growing, and the last box is in the right place
+        ByteBuffer data = builder.getQuadData();
+        int lastBox = 99 * BoxMeshBuilder.VERTICES_PER_BOX_SIDES * BoxMeshBuilder.VERTEX_SIZE;
+        assertEquals(0f, data.getFloat(0));
+        assertEquals(99f, data.getFloat(lastBox));
+    }
+
+    @Test
+    public void clearResetsTheData()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        builder.addBox(0, 0, 0, 1, 1, 1, SIDE_COLOR, EDGE_COLOR);
+        builder.clear();
+
+        assertEquals(0, builder.getQuadVertexCount());
+        assertEquals(0, builder.getLineVertexCount());
+
+        builder.addBox(0, 0, 0, 1, 1, 1, null, EDGE_COLOR);
+
+        assertEquals(0, builder.getQuadVertexCount());
+        assertEquals(BoxMeshBuilder.VERTICES_PER_BOX_EDGES, builder.getLineVertexCount());
+    }
+
+    @Test
+    public void dataViewsAreReadOnly()
+    {
+        BoxMeshBuilder builder = new BoxMeshBuilder(0, 0, 0);
+
+        builder.addBox(0, 0, 0, 1, 1, 1, SIDE_COLOR, EDGE_COLOR);
+
+        assertThrows(ReadOnlyBufferException.class, () -> builder.getQuadData().put(0, (byte) 1));
+        assertThrows(ReadOnlyBufferException.class, () -> builder.getLineData().put(0, (byte) 1));
+    }
+
+    private static void assertPositions(List<float[]> expected, ByteBuffer data)
+    {
+        assertEquals(expected.size() * BoxMeshBuilder.VERTEX_SIZE, data.remaining());
+
+        for (int i = 0; i < expected.size(); ++i)
+        {
+            int offset = i * BoxMeshBuilder.VERTEX_SIZE;
+            float[] pos = expected.get(i);
+
+            assertEquals(pos[0], data.getFloat(offset));
+            assertEquals(pos[1], data.getFloat(offset + 4));
+            assertEquals(pos[2], data.getFloat(offset + 8));
+        }
+    }
+}